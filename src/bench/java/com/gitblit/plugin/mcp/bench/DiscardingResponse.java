@@ -0,0 +1,79 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.bench;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet response whose body is counted and thrown away, for measuring
+ * serialization without a container. Only the status is kept.
+ */
+public class DiscardingResponse {
+
+    private DiscardingResponse() {
+    }
+
+    public static HttpServletResponse create() {
+        final CountingStream stream = new CountingStream();
+        return (HttpServletResponse) Proxy.newProxyInstance(DiscardingResponse.class.getClassLoader(),
+            new Class<?>[] { HttpServletResponse.class }, new InvocationHandler() {
+                private int status = HttpServletResponse.SC_OK;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    switch (method.getName()) {
+                        case "getOutputStream":
+                            return stream;
+                        case "setStatus":
+                        case "sendError":
+                            status = (Integer) args[0];
+                            return null;
+                        case "getStatus":
+                            return status;
+                        default:
+                            break;
+                    }
+                    // Headers are ignored; everything else reports defaults
+                    Class<?> type = method.getReturnType();
+                    if (type == boolean.class) {
+                        return false;
+                    } else if (type == int.class) {
+                        return 0;
+                    } else if (type == long.class) {
+                        return 0L;
+                    }
+                    return null;
+                }
+            });
+    }
+
+    private static class CountingStream extends ServletOutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+        }
+    }
+}
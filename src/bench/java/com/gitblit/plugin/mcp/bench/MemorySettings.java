@@ -0,0 +1,42 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.bench;
+
+import java.util.Map;
+import java.util.Properties;
+
+import com.gitblit.IStoredSettings;
+
+/**
+ * Settings held in memory, for running handlers outside of Gitblit.
+ */
+public class MemorySettings extends IStoredSettings {
+
+    private final Properties properties = new Properties();
+
+    public MemorySettings() {
+        super(MemorySettings.class);
+    }
+
+    public MemorySettings(Map<String, String> values) {
+        this();
+        properties.putAll(values);
+    }
+
+    @Override
+    protected Properties read() {
+        return properties;
+    }
+
+    @Override
+    public boolean saveSettings() {
+        return true;
+    }
+
+    @Override
+    public boolean saveSettings(Map<String, String> values) {
+        properties.putAll(values);
+        return true;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.bench;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import com.gitblit.Constants.AccessRestrictionType;
+import com.gitblit.Constants.SearchObjectType;
+import com.gitblit.IStoredSettings;
+import com.gitblit.manager.GitblitManager;
+import com.gitblit.manager.IGitblit;
+import com.gitblit.manager.IRuntimeManager;
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.SearchResult;
+import com.gitblit.models.UserModel;
+
+/**
+ * {@link IGitblit} over synthetic repositories, overriding what the request
+ * handlers use. Every repository is public; everything else is Gitblit's
+ * implementation with no managers behind it, so a handler that starts
+ * depending on more of Gitblit fails loudly here.
+ *
+ * This extends {@link GitblitManager} rather than proxying the interface:
+ * a proxy would have to load every type in the interface, including SSH
+ * classes that are not on the plugin's classpath.
+ *
+ * Search does not run Lucene: it returns up to a page of hits spread over
+ * the requested repositories, picked deterministically from the query, so
+ * the work after the query (chunk loading, serialization) is exercised.
+ */
+public class StandInGitblit extends GitblitManager {
+
+    private final Map<String, SyntheticRepository> repositories = new LinkedHashMap<>();
+
+    public StandInGitblit(IStoredSettings settings, List<SyntheticRepository> repositories) {
+        super(null, null, runtime(settings), null, null, null, null, null, null, null, null);
+        for (SyntheticRepository repository : repositories) {
+            this.repositories.put(repository.getName(), repository);
+        }
+    }
+
+    /**
+     * Runtime manager that only provides the settings, which is all the
+     * GitblitManager constructor asks of it.
+     */
+    private static IRuntimeManager runtime(final IStoredSettings settings) {
+        return (IRuntimeManager) Proxy.newProxyInstance(StandInGitblit.class.getClassLoader(),
+            new Class<?>[] { IRuntimeManager.class }, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if ("getSettings".equals(method.getName())) {
+                        return settings;
+                    }
+                    throw new UnsupportedOperationException("Not available in the stand-in: " + method);
+                }
+            });
+    }
+
+    @Override
+    public Repository getRepository(String name) {
+        SyntheticRepository synthetic = repositories.get(name);
+        if (synthetic == null) {
+            return null;
+        }
+        // Callers close what they get, as with Gitblit's repository cache
+        synthetic.getRepository().incrementOpen();
+        return synthetic.getRepository();
+    }
+
+    @Override
+    public List<RepositoryModel> getRepositoryModels(UserModel user) {
+        List<RepositoryModel> models = new ArrayList<>();
+        for (SyntheticRepository synthetic : repositories.values()) {
+            models.add(model(synthetic));
+        }
+        return models;
+    }
+
+    @Override
+    public RepositoryModel getRepositoryModel(UserModel user, String name) {
+        return getRepositoryModel(name);
+    }
+
+    @Override
+    public RepositoryModel getRepositoryModel(String name) {
+        SyntheticRepository synthetic = repositories.get(name);
+        return synthetic == null ? null : model(synthetic);
+    }
+
+    private static RepositoryModel model(SyntheticRepository synthetic) {
+        RepositoryModel model = new RepositoryModel(synthetic.getName(), "", "bench",
+            synthetic.getCommit().getCommitterIdent().getWhen());
+        model.HEAD = SyntheticRepository.BRANCH;
+        model.hasCommits = true;
+        model.accessRestriction = AccessRestrictionType.NONE;
+        model.indexedBranches = Collections.singletonList(SyntheticRepository.BRANCH);
+        return model;
+    }
+
+    @Override
+    public List<SearchResult> search(String query, int page, int pageSize, List<String> names) {
+        boolean commits = query.startsWith("type:commit");
+        List<SyntheticRepository> selected = new ArrayList<>();
+        int totalHits = 0;
+        for (String name : names) {
+            SyntheticRepository synthetic = repositories.get(name);
+            if (synthetic != null) {
+                selected.add(synthetic);
+                totalHits += commits ? synthetic.getHistory().size() : synthetic.getPaths().length;
+            }
+        }
+
+        List<SearchResult> results = new ArrayList<>();
+        int seed = query.hashCode() & Integer.MAX_VALUE;
+        for (int i = 0; i < Math.min(pageSize, totalHits) && !selected.isEmpty(); i++) {
+            SyntheticRepository synthetic = selected.get(i % selected.size());
+            SearchResult result = new SearchResult();
+            result.hitId = i;
+            result.totalHits = totalHits;
+            result.repository = synthetic.getName();
+            result.branch = SyntheticRepository.BRANCH;
+            if (commits) {
+                List<RevCommit> history = synthetic.getHistory();
+                RevCommit commit = history.get(history.size() - 1 - (i / selected.size()) % history.size());
+                result.type = SearchObjectType.commit;
+                result.commitId = commit.getName();
+                result.author = commit.getAuthorIdent().getName();
+                result.committer = commit.getCommitterIdent().getName();
+                result.date = new Date(commit.getCommitTime() * 1000L);
+                result.summary = commit.getFullMessage();
+            } else {
+                String[] paths = synthetic.getPaths();
+                result.type = SearchObjectType.blob;
+                result.commitId = synthetic.getCommit().getName();
+                result.path = paths[(seed + i * 7919) % paths.length];
+                result.fragment = "int <span class=\"highlight\">value</span>";
+            }
+            results.add(result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.bench;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Servlet request with the given method, parameters and body, for driving
+ * handlers without a container. Attributes are stored; headers are absent.
+ */
+public class StandInRequest implements InvocationHandler {
+
+    private static final String API_PATH = "/api/.mcp-internal/";
+
+    private final String method;
+    private final String endpoint;
+    private final Map<String, String> parameters;
+    private final byte[] body;
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    private StandInRequest(String method, String endpoint, Map<String, String> parameters, byte[] body) {
+        this.method = method;
+        this.endpoint = endpoint;
+        this.parameters = parameters;
+        this.body = body;
+    }
+
+    public static HttpServletRequest get(String endpoint, Map<String, String> parameters) {
+        return create(new StandInRequest("GET", endpoint, parameters, null));
+    }
+
+    public static HttpServletRequest post(String endpoint, String json) {
+        return create(new StandInRequest("POST", endpoint, Collections.<String, String>emptyMap(),
+            json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static HttpServletRequest create(StandInRequest handler) {
+        return (HttpServletRequest) Proxy.newProxyInstance(StandInRequest.class.getClassLoader(),
+            new Class<?>[] { HttpServletRequest.class }, handler);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method m, Object[] args) {
+        switch (m.getName()) {
+            case "getMethod":
+                return method;
+            case "getRequestURI":
+                return API_PATH + endpoint;
+            case "getParameter":
+                return parameters.get(args[0]);
+            case "getParameterMap":
+                Map<String, String[]> map = new LinkedHashMap<>();
+                for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                    map.put(parameter.getKey(), new String[] { parameter.getValue() });
+                }
+                return map;
+            case "getAttribute":
+                return attributes.get(args[0]);
+            case "setAttribute":
+                attributes.put((String) args[0], args[1]);
+                return null;
+            case "getContentLengthLong":
+                return body != null ? (long) body.length : -1L;
+            case "getContentLength":
+                return body != null ? body.length : -1;
+            case "getInputStream":
+                return new BodyStream(body != null ? body : new byte[0]);
+            default:
+                break;
+        }
+        Class<?> type = m.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return -1L;
+        }
+        return null;
+    }
+
+    private static class BodyStream extends ServletInputStream {
+        private final ByteArrayInputStream in;
+
+        BodyStream(byte[] body) {
+            this.in = new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public int read() {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return in.read(b, off, len);
+        }
+
+        @Override
+        public boolean isFinished() {
+            return in.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener listener) {
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.FileUtils;
+
+/**
+ * Repository with generated content, so benchmarks run without fixtures.
+ * Generation is seeded and therefore repeatable. The repository is bare,
+ * fully packed, in a temporary directory that is deleted on close. The
+ * generated history is on refs/heads/master, which HEAD points to.
+ */
+public class SyntheticRepository implements AutoCloseable {
+
+    public static final String BRANCH = "refs/heads/master";
+
+    private static final String[] EXTENSIONS = {
+        ".java", ".java", ".java", ".java", ".xml", ".md", ".properties", ".ts", ".py"
+    };
+
+    private static final String[] WORDS = {
+        "repository", "commit", "branch", "index", "search", "result", "cache", "tree",
+        "blob", "reader", "writer", "handler", "request", "response", "value", "count"
+    };
+
+    /**
+     * Shape of a generated repository.
+     */
+    public static class Shape {
+        public int files = 1000;
+        public int depth = 4;         // directory levels above each file
+        public int commits = 10;      // history length; each later commit changes 2% of the files
+        public int blobSize = 4096;   // approximate bytes per file
+    }
+
+    private final String name;
+    private final File root;
+    private final FileRepository repository;
+    private final String[] paths;
+    private final List<RevCommit> history = new ArrayList<>();
+
+    private SyntheticRepository(String name, String[] paths) throws IOException {
+        this.name = name;
+        this.root = Files.createTempDirectory("mcp-bench").toFile();
+        this.repository = new FileRepository(new File(root, name));
+        this.repository.create(true);
+        this.paths = paths;
+    }
+
+    /**
+     * Create a repository with one commit containing the given paths. Each
+     * file holds a short unique text.
+     */
+    public static SyntheticRepository generate(String name, String[] paths) throws IOException {
+        return generate(name, paths, null, null);
+    }
+
+    /**
+     * Create a repository whose commit contains the given paths plus one
+     * file with the given content.
+     */
+    public static SyntheticRepository generate(String name, String[] paths, String extraPath, byte[] extraContent)
+            throws IOException {
+        SyntheticRepository synthetic = new SyntheticRepository(name, paths);
+        try (ObjectInserter inserter = synthetic.repository.newObjectInserter()) {
+            Map<String, ObjectId> tree = new TreeMap<>();
+            for (String path : paths) {
+                tree.put(path, inserter.insert(Constants.OBJ_BLOB, path.getBytes(StandardCharsets.UTF_8)));
+            }
+            if (extraPath != null) {
+                tree.put(extraPath, inserter.insert(Constants.OBJ_BLOB, extraContent));
+            }
+            synthetic.commit(inserter, tree, "Synthetic content");
+        }
+        synthetic.finish();
+        return synthetic;
+    }
+
+    /**
+     * Create a repository of the given shape, with a history in which every
+     * commit after the first rewrites a random 2% of the files.
+     */
+    public static SyntheticRepository generate(String name, Shape shape, long seed) throws IOException {
+        Random random = new Random(seed);
+        String[] paths = paths(shape.files, shape.depth, seed);
+        SyntheticRepository synthetic = new SyntheticRepository(name, paths);
+
+        int lines = Math.max(1, shape.blobSize / 40);
+        int changesPerCommit = Math.max(1, shape.files / 50);
+        try (ObjectInserter inserter = synthetic.repository.newObjectInserter()) {
+            Map<String, ObjectId> tree = new TreeMap<>();
+            for (String path : paths) {
+                tree.put(path, insertText(inserter, lines, random.nextLong()));
+            }
+            synthetic.commit(inserter, tree, "Initial content");
+
+            for (int i = 1; i < shape.commits; i++) {
+                for (int change = 0; change < changesPerCommit; change++) {
+                    tree.put(paths[random.nextInt(paths.length)], insertText(inserter, lines, random.nextLong()));
+                }
+                synthetic.commit(inserter, tree, "Update " + WORDS[random.nextInt(WORDS.length)] + " " + i);
+            }
+        }
+        synthetic.finish();
+        return synthetic;
+    }
+
+    /**
+     * Generate sorted, unique source-tree-like paths.
+     */
+    public static String[] paths(int count, long seed) {
+        Random random = new Random(seed);
+        String[] paths = new String[count];
+        for (int i = 0; i < count; i++) {
+            paths[i] = "module" + random.nextInt(20)
+                + "/src/main/java/com/example/pkg" + random.nextInt(50)
+                + "/sub" + random.nextInt(10)
+                + "/File" + i + EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+        }
+        Arrays.sort(paths);
+        return paths;
+    }
+
+    /**
+     * Generate sorted, unique paths with the given number of directory
+     * levels, spread so that directories hold about as many entries as there
+     * are directories per level.
+     */
+    public static String[] paths(int count, int depth, long seed) {
+        Random random = new Random(seed);
+        int fanOut = Math.max(2, (int) Math.round(Math.pow(count, 1.0 / (depth + 1))));
+        String[] paths = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder path = new StringBuilder();
+            for (int level = 0; level < depth; level++) {
+                path.append("dir").append(level).append('_').append(random.nextInt(fanOut)).append('/');
+            }
+            path.append("File").append(i).append(EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+            paths[i] = path.toString();
+        }
+        Arrays.sort(paths);
+        return paths;
+    }
+
+    /**
+     * Generate Java-like source text with the given number of lines.
+     */
+    public static String sourceText(int lines, long seed) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(lines * 64);
+        for (int i = 0; i < lines; i++) {
+            switch (i % 8) {
+                case 0:
+                    text.append("    /** Returns the ").append(word(random)).append(" of the ")
+                        .append(word(random)).append(". */");
+                    break;
+                case 1:
+                    text.append("    public int ").append(word(random)).append(i)
+                        .append("(int value) {");
+                    break;
+                case 2:
+                    text.append("        int ").append(word(random)).append(" = value * ").append(i).append(';');
+                    break;
+                case 3:
+                    text.append("        return ").append(word(random)).append(" + ")
+                        .append(random.nextInt(1000)).append(';');
+                    break;
+                case 4:
+                    text.append("    }");
+                    break;
+                default:
+                    text.append("");
+                    break;
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static ObjectId insertText(ObjectInserter inserter, int lines, long seed) throws IOException {
+        return inserter.insert(Constants.OBJ_BLOB, sourceText(lines, seed).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Repository getRepository() {
+        return repository;
+    }
+
+    /**
+     * The newest commit, which the branch points to.
+     */
+    public RevCommit getCommit() {
+        return history.get(history.size() - 1);
+    }
+
+    /**
+     * All commits, oldest first.
+     */
+    public List<RevCommit> getHistory() {
+        return Collections.unmodifiableList(history);
+    }
+
+    public String[] getPaths() {
+        return paths;
+    }
+
+    private void commit(ObjectInserter inserter, Map<String, ObjectId> tree, String message) throws IOException {
+        DirCache index = DirCache.newInCore();
+        DirCacheBuilder builder = index.builder();
+        for (Map.Entry<String, ObjectId> file : tree.entrySet()) {
+            DirCacheEntry entry = new DirCacheEntry(file.getKey());
+            entry.setFileMode(FileMode.REGULAR_FILE);
+            entry.setObjectId(file.getValue());
+            builder.add(entry);
+        }
+        builder.finish();
+
+        PersonIdent ident = new PersonIdent("Bench", "bench@example.com", 1000L * 3600 * history.size(), 0);
+        CommitBuilder commitBuilder = new CommitBuilder();
+        commitBuilder.setTreeId(index.writeTree(inserter));
+        if (!history.isEmpty()) {
+            commitBuilder.setParentId(getCommit());
+        }
+        commitBuilder.setAuthor(ident);
+        commitBuilder.setCommitter(ident);
+        commitBuilder.setMessage(message + "\n");
+        ObjectId commitId = inserter.insert(commitBuilder);
+        inserter.flush();
+
+        try (RevWalk walk = new RevWalk(repository)) {
+            history.add(walk.parseCommit(commitId));
+        }
+    }
+
+    private void finish() throws IOException {
+        RefUpdate branch = repository.updateRef(BRANCH);
+        branch.setNewObjectId(getCommit());
+        branch.forceUpdate();
+        repository.updateRef(Constants.HEAD).link(BRANCH);
+
+        // Pack everything, as in a maintained server repository
+        try {
+            new GC(repository).gc();
+        } catch (ParseException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        repository.close();
+        try {
+            FileUtils.delete(root, FileUtils.RECURSIVE | FileUtils.RETRY);
+        } catch (IOException e) {
+            // Temporary directory; nothing else to do
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.handlers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gitblit.plugin.mcp.bench.SyntheticRepository;
+import com.gitblit.plugin.mcp.cache.BlobCache;
+import com.gitblit.plugin.mcp.cache.CachedBlob;
+import com.gitblit.plugin.mcp.util.LineWindow;
+
+/**
+ * /file content handling: decoding and line-indexing a blob, rendering
+ * numbered line ranges from a cached blob, and streaming a window out of a
+ * large blob.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FileLinesBenchmark {
+
+    private static final String PATH = "src/Large.java";
+
+    @Param({ "1000", "20000" })
+    public int lineCount;
+
+    private SyntheticRepository repository;
+    private ObjectId blobId;
+    private CachedBlob blob;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] content = SyntheticRepository.sourceText(lineCount, 11).getBytes(StandardCharsets.UTF_8);
+        repository = SyntheticRepository.generate("file", new String[0], PATH, content);
+        try (ObjectReader reader = repository.getRepository().newObjectReader()) {
+            blobId = FileHandler.findBlob(reader, repository.getCommit(), PATH);
+            blob = new BlobCache(64L * 1024 * 1024).load(reader, blobId);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Benchmark
+    public CachedBlob loadBlob() throws IOException {
+        // A fresh cache, so every call decodes and indexes the blob
+        try (ObjectReader reader = repository.getRepository().newObjectReader()) {
+            return new BlobCache(64L * 1024 * 1024).load(reader, blobId);
+        }
+    }
+
+    @Benchmark
+    public String formatWindow() {
+        int start = lineCount / 2;
+        return FileHandler.formatLines(blob, start, start + 100);
+    }
+
+    @Benchmark
+    public String formatAll() {
+        return FileHandler.formatLines(blob, 1, lineCount);
+    }
+
+    @Benchmark
+    public LineWindow streamWindow() throws IOException {
+        int start = lineCount / 2;
+        try (ObjectReader reader = repository.getRepository().newObjectReader();
+             InputStream in = reader.open(blobId).openStream()) {
+            byte[] head = new byte[LineWindow.BINARY_CHECK_SIZE];
+            int length = in.read(head);
+            return LineWindow.read(head, Math.max(0, length), in, start, start + 100, 1024 * 1024);
+        }
+    }
+}
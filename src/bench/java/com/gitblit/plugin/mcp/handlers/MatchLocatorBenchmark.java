@@ -0,0 +1,80 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.handlers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gitblit.plugin.mcp.bench.SyntheticRepository;
+import com.gitblit.plugin.mcp.cache.BlobCache;
+import com.gitblit.plugin.mcp.cache.CachedBlob;
+
+/**
+ * Locating query terms in a file, as done for every /search/files result
+ * that gets a context chunk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MatchLocatorBenchmark {
+
+    @Param({ "1000", "20000" })
+    public int lineCount;
+
+    private CachedBlob blob;
+    private MatchLocator rareTerm;
+    private MatchLocator commonTerm;
+    private MatchLocator wildcardTerm;
+
+    @Setup
+    public void setup() {
+        String text = SyntheticRepository.sourceText(lineCount, 7);
+        blob = BlobCache.wrap(text.getBytes(StandardCharsets.UTF_8));
+        String[] lines = text.split("\n", -1);
+
+        // A method name near the end of the file; names ending in their own
+        // line index are unique
+        int target = lineCount - lineCount / 10;
+        while (!lines[target].contains("public int ")) {
+            target--;
+        }
+        String name = lines[target].trim().split("[ (]")[2];
+        rareTerm = MatchLocator.forQuery(name);
+
+        // Occurs on every eighth line, so the scan stops at the match cap
+        commonTerm = MatchLocator.forQuery("value AND NOT path:test");
+
+        wildcardTerm = MatchLocator.forQuery(name.substring(0, 2) + "*" + target);
+    }
+
+    @Benchmark
+    public int rareTerm() {
+        return rareTerm.locate(blob, ChunkLoader.MAX_MATCHES).size();
+    }
+
+    @Benchmark
+    public int commonTerm() {
+        return commonTerm.locate(blob, ChunkLoader.MAX_MATCHES).size();
+    }
+
+    @Benchmark
+    public int wildcardTerm() {
+        return wildcardTerm.locate(blob, ChunkLoader.MAX_MATCHES).size();
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.load;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.gitblit.manager.IGitblit;
+import com.gitblit.models.UserModel;
+import com.gitblit.plugin.mcp.bench.DiscardingResponse;
+import com.gitblit.plugin.mcp.bench.MemorySettings;
+import com.gitblit.plugin.mcp.bench.StandInGitblit;
+import com.gitblit.plugin.mcp.bench.StandInRequest;
+import com.gitblit.plugin.mcp.bench.SyntheticRepository;
+import com.gitblit.plugin.mcp.handlers.CommitSearchHandler;
+import com.gitblit.plugin.mcp.handlers.FileBatchHandler;
+import com.gitblit.plugin.mcp.handlers.FileHandler;
+import com.gitblit.plugin.mcp.handlers.FileSearchHandler;
+import com.gitblit.plugin.mcp.handlers.FilesHandler;
+import com.gitblit.plugin.mcp.handlers.FindFilesHandler;
+import com.gitblit.plugin.mcp.handlers.ReposHandler;
+import com.gitblit.plugin.mcp.handlers.RequestHandler;
+import com.gitblit.plugin.mcp.metrics.ApiMetrics;
+import com.gitblit.plugin.mcp.metrics.EndpointMetrics;
+import com.gitblit.plugin.mcp.metrics.LatencyHistogram;
+import com.gitblit.plugin.mcp.metrics.MeteredResponse;
+import com.gitblit.plugin.mcp.metrics.RequestMetrics;
+import com.gitblit.plugin.mcp.model.FileBatchRequest;
+import com.gitblit.plugin.mcp.util.WorkerPool;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Load test of the request handlers without Gitblit, Docker or a network.
+ *
+ * Generates synthetic repositories, then runs concurrent clients that call
+ * the real handlers through a stand-in Gitblit and servlet objects, and
+ * reports throughput and latency percentiles per endpoint and phase. Search
+ * endpoints use canned hits instead of Lucene (see {@link StandInGitblit}).
+ *
+ * Arguments are key=value pairs; run with "help" for the list. The exit
+ * status is 1 if any request threw, during the warm-up or the measurement.
+ */
+public class LoadHarness {
+
+    private static final String ALL_ENDPOINTS = "repos,files,file,file/batch,find,search/files,search/commits";
+
+    private static final String[] OPTIONS = {
+        "repos=4", "number of repositories",
+        "files=2000", "files per repository",
+        "depth=4", "directory levels above each file",
+        "commits=20", "history length",
+        "blobSize=4096", "approximate bytes per file",
+        "clients=8", "concurrent clients",
+        "warmup=5", "warm-up seconds, not measured",
+        "seconds=20", "measured seconds",
+        "endpoints=" + ALL_ENDPOINTS, "comma-separated endpoints to call",
+        "seed=42", "random seed",
+        "json=", "also write the report to this file",
+    };
+
+    private static final String[] FIND_PATTERNS = {
+        "**/*.java", "**/*.md", "dir0_1/**", "**/File1*.xml", "**/dir2_0/*",
+    };
+
+    private final Map<String, String> options;
+    private final List<SyntheticRepository> repositories = new ArrayList<>();
+    private final Gson gson = new Gson();
+    private final Set<String> failing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private IGitblit gitblit;
+    private UserModel user;
+
+    /**
+     * Request generator for one endpoint.
+     */
+    private abstract static class Workload {
+        final String endpoint;
+        final RequestHandler handler;
+
+        Workload(String endpoint, RequestHandler handler) {
+            this.endpoint = endpoint;
+            this.handler = handler;
+        }
+
+        abstract HttpServletRequest next(Random random);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < OPTIONS.length; i += 2) {
+            String[] option = OPTIONS[i].split("=", 2);
+            options.put(option[0], option[1]);
+        }
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2 || !options.containsKey(option[0])) {
+                usage();
+                return;
+            }
+            options.put(option[0], option[1]);
+        }
+
+        LoadHarness harness = new LoadHarness(options);
+        boolean ok;
+        try {
+            ok = harness.run();
+        } finally {
+            harness.close();
+        }
+        if (!ok) {
+            // Numbers from a run with failing requests are not comparable
+            System.exit(1);
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: LoadHarness [key=value ...]");
+        for (int i = 0; i < OPTIONS.length; i += 2) {
+            String[] option = OPTIONS[i].split("=", 2);
+            System.out.printf("  %-10s %s (default: %s)%n", option[0], OPTIONS[i + 1],
+                option[1].isEmpty() ? "none" : option[1]);
+        }
+    }
+
+    private LoadHarness(Map<String, String> options) {
+        this.options = options;
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    /**
+     * Generate the repositories, warm up, measure and report.
+     *
+     * @return whether every request, including those of the warm-up, succeeded
+     */
+    private boolean run() throws Exception {
+        SyntheticRepository.Shape shape = new SyntheticRepository.Shape();
+        shape.files = intOption("files");
+        shape.depth = intOption("depth");
+        shape.commits = intOption("commits");
+        shape.blobSize = intOption("blobSize");
+        long seed = Long.parseLong(options.get("seed"));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < intOption("repos"); i++) {
+            repositories.add(SyntheticRepository.generate("load/repo" + i + ".git", shape, seed + i));
+        }
+        System.out.printf("Generated %d repositories of %d files, %d commits in %d ms%n",
+            repositories.size(), shape.files, shape.commits, (System.nanoTime() - start) / 1000000);
+
+        gitblit = new StandInGitblit(new MemorySettings(), repositories);
+        user = new UserModel("load");
+
+        List<Workload> workloads = new ArrayList<>();
+        for (String endpoint : options.get("endpoints").split(",")) {
+            workloads.add(workload(endpoint.trim()));
+        }
+
+        int clients = intOption("clients");
+        long warmupFailures = drive(workloads, clients, intOption("warmup"), seed, false);
+        long failures = drive(workloads, clients, intOption("seconds"), seed + 1, true);
+
+        report(intOption("seconds"), clients, warmupFailures, failures);
+        return warmupFailures == 0 && failures == 0;
+    }
+
+    /**
+     * Run the clients for the given time.
+     *
+     * @return number of requests that threw
+     */
+    private long drive(final List<Workload> workloads, int clients, int seconds, long seed, final boolean measure)
+            throws InterruptedException {
+        if (seconds <= 0) {
+            return 0;
+        }
+        final long deadline = System.nanoTime() + seconds * 1000000000L;
+        final AtomicLong failures = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(clients);
+
+        for (int c = 0; c < clients; c++) {
+            final Random random = new Random(seed * 31 + c);
+            Thread client = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (System.nanoTime() - deadline < 0) {
+                            if (!call(workloads.get(random.nextInt(workloads.size())), random, measure)) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "load-client-" + c);
+            client.setDaemon(true);
+            client.start();
+        }
+        done.await();
+        return failures.get();
+    }
+
+    private boolean call(Workload workload, Random random, boolean measure) {
+        HttpServletRequest request = workload.next(random);
+        RequestMetrics metrics = measure ? RequestMetrics.start(request) : null;
+        MeteredResponse response = new MeteredResponse(DiscardingResponse.create());
+        boolean ok = true;
+        try {
+            workload.handler.handle(request, response, gitblit, user);
+        } catch (Exception e) {
+            if (failing.add(workload.endpoint)) {
+                System.err.println(workload.endpoint + " failed, further failures are only counted:");
+                e.printStackTrace();
+            }
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            ok = false;
+        }
+        if (metrics != null) {
+            metrics.setEndpoint(workload.endpoint);
+            metrics.mark("serialize");
+            ApiMetrics.get().record(metrics, response.getStatus(), response.getBytesWritten());
+        }
+        return ok;
+    }
+
+    private void report(int seconds, int clients, long warmupFailures, long failures) throws IOException {
+        Map<String, EndpointMetrics.Snapshot> endpoints = ApiMetrics.get().snapshot();
+
+        System.out.printf("%n%d clients, %d s, %d requests threw, %d during warm-up%n%n",
+            clients, seconds, failures, warmupFailures);
+        System.out.printf(Locale.ROOT, "%-16s %9s %9s %7s %9s %9s %9s %9s %10s%n",
+            "endpoint", "requests", "req/s", "errors", "p50 ms", "p95 ms", "p99 ms", "max ms", "KB/req");
+        for (Map.Entry<String, EndpointMetrics.Snapshot> entry : endpoints.entrySet()) {
+            EndpointMetrics.Snapshot endpoint = entry.getValue();
+            LatencyHistogram.Snapshot latency = endpoint.latency;
+            System.out.printf(Locale.ROOT, "%-16s %9d %9.1f %7d %9.2f %9.2f %9.2f %9.2f %10.1f%n",
+                entry.getKey(), endpoint.requests, endpoint.requests / (double) seconds,
+                endpoint.clientErrors + endpoint.serverErrors,
+                latency.p50Ms, latency.p95Ms, latency.p99Ms, latency.maxMs,
+                endpoint.bytesSent / 1024.0 / Math.max(1, endpoint.requests));
+            for (Map.Entry<String, LatencyHistogram.Snapshot> phase : endpoint.phases.entrySet()) {
+                LatencyHistogram.Snapshot timing = phase.getValue();
+                System.out.printf(Locale.ROOT, "  %-14s %39.2f %9.2f %9.2f %9.2f%n",
+                    phase.getKey(), timing.p50Ms, timing.p95Ms, timing.p99Ms, timing.maxMs);
+            }
+        }
+
+        String json = options.get("json");
+        if (!json.isEmpty()) {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("options", options);
+            report.put("warmupFailures", warmupFailures);
+            report.put("failures", failures);
+            report.put("endpoints", endpoints);
+            try (Writer writer = new FileWriter(json)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+            }
+            System.out.println("\nReport written to " + json);
+        }
+    }
+
+    private void close() {
+        WorkerPool.shutdownAll();
+        for (SyntheticRepository repository : repositories) {
+            repository.close();
+        }
+    }
+
+    private SyntheticRepository anyRepository(Random random) {
+        return repositories.get(random.nextInt(repositories.size()));
+    }
+
+    private static String anyPath(SyntheticRepository repository, Random random) {
+        String[] paths = repository.getPaths();
+        return paths[random.nextInt(paths.length)];
+    }
+
+    private String someRepositories(Random random) {
+        if (random.nextBoolean()) {
+            return anyRepository(random).getName();
+        }
+        StringBuilder names = new StringBuilder();
+        for (SyntheticRepository repository : repositories) {
+            if (names.length() > 0) {
+                names.append(',');
+            }
+            names.append(repository.getName());
+        }
+        return names.toString();
+    }
+
+    private static Map<String, String> params(String... keyValues) {
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            params.put(keyValues[i], keyValues[i + 1]);
+        }
+        return params;
+    }
+
+    private Workload workload(String endpoint) {
+        switch (endpoint) {
+            case "repos":
+                return new Workload(endpoint, new ReposHandler()) {
+                    @Override
+                    HttpServletRequest next(Random random) {
+                        return StandInRequest.get(endpoint, params("limit", "50"));
+                    }
+                };
+            case "files":
+                return new Workload(endpoint, new FilesHandler()) {
+                    @Override
+                    HttpServletRequest next(Random random) {
+                        SyntheticRepository repository = anyRepository(random);
+                        String path = anyPath(repository, random);
+                        String directory = path.indexOf('/') < 0 ? "" : path.substring(0, path.lastIndexOf('/'));
+                        return StandInRequest.get(endpoint, params("repo", repository.getName(), "path", directory));
+                    }
+                };
+            case "file":
+                return new Workload(endpoint, new FileHandler()) {
+                    @Override
+                    HttpServletRequest next(Random random) {
+                        SyntheticRepository repository = anyRepository(random);
+                        int startLine = 1 + random.nextInt(50);
+                        return StandInRequest.get(endpoint, params("repo", repository.getName(),
+                            "path", anyPath(repository, random),
+                            "startLine", String.valueOf(startLine), "endLine", String.valueOf(startLine + 100)));
+                    }
+                };
+            case "file/batch":
+                return new Workload(endpoint, new FileBatchHandler()) {
+                    @Override
+                    HttpServletRequest next(Random random) {
+                        FileBatchRequest batch = new FileBatchRequest();
+                        batch.items = new ArrayList<>();
+                        for (int i = 0; i < 10; i++) {
+                            SyntheticRepository repository = anyRepository(random);
+                            FileBatchRequest.Item item = new FileBatchRequest.Item();
+                            item.repo = repository.getName();
+                            item.path = anyPath(repository, random);
+                            batch.items.add(item);
+                        }
+                        return StandInRequest.post(endpoint, gson.toJson(batch));
+                    }
+                };
+            case "find":
+                return new Workload(endpoint, new FindFilesHandler()) {
+                    @Override
+                    HttpServletRequest next(Random random) {
+                        return StandInRequest.get(endpoint, params(
+                            "pathPattern", FIND_PATTERNS[random.nextInt(FIND_PATTERNS.length)],
+                            "repos", someRepositories(random), "limit", "100"));
+                    }
+                };
+            case "search/files":
+                return new Workload(endpoint, new FileSearchHandler()) {
+                    @Override
+                    HttpServletRequest next(Random random) {
+                        return StandInRequest.get(endpoint, params("query", "value" + random.nextInt(100),
+                            "repos", someRepositories(random), "limit", "25"));
+                    }
+                };
+            case "search/commits":
+                return new Workload(endpoint, new CommitSearchHandler()) {
+                    @Override
+                    HttpServletRequest next(Random random) {
+                        return StandInRequest.get(endpoint, params("query", "update",
+                            "repos", someRepositories(random), "limit", "25"));
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown endpoint: " + endpoint + "; expected one of " + ALL_ENDPOINTS);
+        }
+    }
+}
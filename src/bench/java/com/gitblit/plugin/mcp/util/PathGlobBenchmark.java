@@ -0,0 +1,101 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.util;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gitblit.plugin.mcp.bench.SyntheticRepository;
+
+/**
+ * Glob compilation and matching as done by /find: a full scan of a path
+ * list, the literal-prefix narrowed scan of a cached sorted path index, and
+ * a filtered tree walk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PathGlobBenchmark {
+
+    @Param({ "**/*.java", "module1/**/*.xml", "**/pkg7/**/File1*.java" })
+    public String glob;
+
+    @Param({ "50000" })
+    public int pathCount;
+
+    private SyntheticRepository repository;
+    private String[] paths;
+    private PathGlob compiled;
+
+    @Setup
+    public void setup() throws IOException {
+        repository = SyntheticRepository.generate("paths", SyntheticRepository.paths(pathCount, 42));
+        paths = repository.getPaths();
+        compiled = PathGlob.compile(glob);
+    }
+
+    @TearDown
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Benchmark
+    public PathGlob compile() {
+        return PathGlob.compile(glob);
+    }
+
+    @Benchmark
+    public int matchAll() {
+        int matches = 0;
+        for (String path : paths) {
+            if (compiled.matches(path)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int matchCandidateRange() {
+        int[] range = compiled.candidateRange(paths);
+        int matches = 0;
+        for (int i = range[0]; i < range[1]; i++) {
+            if (compiled.matches(paths[i])) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int walkTree() throws IOException {
+        int matches = 0;
+        try (TreeWalk treeWalk = new TreeWalk(repository.getRepository())) {
+            treeWalk.addTree(repository.getCommit().getTree());
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(new GlobTreeFilter(compiled));
+            while (treeWalk.next()) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
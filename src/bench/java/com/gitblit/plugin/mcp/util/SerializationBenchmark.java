@@ -0,0 +1,102 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gitblit.plugin.mcp.bench.DiscardingResponse;
+import com.gitblit.plugin.mcp.bench.SyntheticRepository;
+import com.gitblit.plugin.mcp.model.FileContentResponse;
+import com.gitblit.plugin.mcp.model.FileSearchResponse;
+import com.gitblit.plugin.mcp.model.FindFilesResponse;
+
+/**
+ * JSON serialization of large response DTOs through {@link ResponseWriter},
+ * into a response that discards the bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializationBenchmark {
+
+    private FindFilesResponse findResponse;
+    private FileSearchResponse searchResponse;
+    private FileContentResponse fileResponse;
+
+    @Setup
+    public void setup() {
+        // /find: 20 repositories with 500 matches each
+        String[] paths = SyntheticRepository.paths(10000, 42);
+        findResponse = new FindFilesResponse();
+        findResponse.pattern = "**/*";
+        findResponse.totalCount = paths.length;
+        findResponse.results = new ArrayList<>();
+        for (int repo = 0; repo < 20; repo++) {
+            List<String> files = Arrays.asList(paths).subList(repo * 500, (repo + 1) * 500);
+            findResponse.results.add(new FindFilesResponse.FindFilesResult("repo" + repo + ".git", "master", files));
+        }
+
+        // /search/files: 100 results with a 20 line chunk each
+        String[] lines = SyntheticRepository.sourceText(2000, 7).split("\n", -1);
+        searchResponse = new FileSearchResponse();
+        searchResponse.query = "content:value";
+        searchResponse.results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            FileSearchResponse.FileSearchResult result = new FileSearchResponse.FileSearchResult();
+            result.repository = "repo" + (i % 20) + ".git";
+            result.path = paths[i * 100];
+            result.branch = "refs/heads/master";
+            result.commitId = "0123456789abcdef0123456789abcdef01234567";
+            StringBuilder chunk = new StringBuilder();
+            for (int line = i * 20; line < i * 20 + 20; line++) {
+                chunk.append(line + 1).append(": ").append(lines[line]).append('\n');
+            }
+            result.chunks = new ArrayList<>();
+            result.chunks.add(new FileSearchResponse.Chunk(i * 20 + 1, i * 20 + 20, chunk.toString()));
+            searchResponse.results.add(result);
+        }
+        searchResponse.totalCount = searchResponse.results.size();
+
+        // /file: a 10k line window
+        StringBuilder content = new StringBuilder();
+        String[] fileLines = SyntheticRepository.sourceText(10000, 11).split("\n", -1);
+        for (int i = 0; i < 10000; i++) {
+            content.append(i + 1).append(": ").append(fileLines[i]).append('\n');
+        }
+        fileResponse = new FileContentResponse(content.toString());
+    }
+
+    @Benchmark
+    public void writeFindResponse() throws IOException {
+        ResponseWriter.writeJson(DiscardingResponse.create(), findResponse);
+    }
+
+    @Benchmark
+    public void writeSearchResponse() throws IOException {
+        ResponseWriter.writeJson(DiscardingResponse.create(), searchResponse);
+    }
+
+    @Benchmark
+    public void writeFileResponse() throws IOException {
+        ResponseWriter.writeJson(DiscardingResponse.create(), fileResponse);
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp;
+
+import ro.fortsoft.pf4j.Extension;
+
+import com.gitblit.extensions.RepositoryLifeCycleListener;
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.plugin.mcp.cache.RepositoryAccessCache;
+
+/**
+ * Drops cached repository access snapshots when repositories come and go.
+ */
+@Extension
+public class AccessCacheRepositoryListener extends RepositoryLifeCycleListener {
+
+    @Override
+    public void onCreation(RepositoryModel repository) {
+        RepositoryAccessCache.invalidateAll();
+    }
+
+    @Override
+    public void onFork(RepositoryModel origin, RepositoryModel fork) {
+        RepositoryAccessCache.invalidateAll();
+    }
+
+    @Override
+    public void onRename(String oldName, RepositoryModel repository) {
+        RepositoryAccessCache.invalidateAll();
+    }
+
+    @Override
+    public void onDeletion(RepositoryModel repository) {
+        RepositoryAccessCache.invalidateAll();
+    }
+}
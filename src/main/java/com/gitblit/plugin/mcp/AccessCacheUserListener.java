@@ -0,0 +1,38 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp;
+
+import ro.fortsoft.pf4j.Extension;
+
+import com.gitblit.extensions.UserTeamLifeCycleListener;
+import com.gitblit.models.TeamModel;
+import com.gitblit.models.UserModel;
+import com.gitblit.plugin.mcp.cache.RepositoryAccessCache;
+
+/**
+ * Drops cached repository access snapshots when users or teams come and go.
+ */
+@Extension
+public class AccessCacheUserListener extends UserTeamLifeCycleListener {
+
+    @Override
+    public void onCreation(UserModel user) {
+        RepositoryAccessCache.invalidateAll();
+    }
+
+    @Override
+    public void onDeletion(UserModel user) {
+        RepositoryAccessCache.invalidateAll();
+    }
+
+    @Override
+    public void onCreation(TeamModel team) {
+        RepositoryAccessCache.invalidateAll();
+    }
+
+    @Override
+    public void onDeletion(TeamModel team) {
+        RepositoryAccessCache.invalidateAll();
+    }
+}
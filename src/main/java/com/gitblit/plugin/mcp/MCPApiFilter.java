@@ -5,7 +5,10 @@
 package com.gitblit.plugin.mcp;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
@@ -18,18 +21,29 @@ import org.slf4j.LoggerFactory;
 
 import ro.fortsoft.pf4j.Extension;
 
+import com.gitblit.IStoredSettings;
 import com.gitblit.extensions.HttpRequestFilter;
 import com.gitblit.manager.IAuthenticationManager;
 import com.gitblit.manager.IGitblit;
 import com.gitblit.models.UserModel;
+import com.gitblit.plugin.mcp.handlers.CacheStatsHandler;
 import com.gitblit.plugin.mcp.handlers.CommitSearchHandler;
+import com.gitblit.plugin.mcp.handlers.FileBatchHandler;
 import com.gitblit.plugin.mcp.handlers.FileHandler;
 import com.gitblit.plugin.mcp.handlers.FileSearchHandler;
 import com.gitblit.plugin.mcp.handlers.FilesHandler;
 import com.gitblit.plugin.mcp.handlers.FindFilesHandler;
+import com.gitblit.plugin.mcp.handlers.MetricsHandler;
+import com.gitblit.plugin.mcp.handlers.RegexSearchHandler;
 import com.gitblit.plugin.mcp.handlers.ReposHandler;
 import com.gitblit.plugin.mcp.handlers.RequestHandler;
+import com.gitblit.plugin.mcp.metrics.ApiMetrics;
+import com.gitblit.plugin.mcp.metrics.MeteredResponse;
+import com.gitblit.plugin.mcp.metrics.RequestMetrics;
+import com.gitblit.plugin.mcp.util.CompressingResponse;
+import com.gitblit.plugin.mcp.util.Deadline;
 import com.gitblit.plugin.mcp.util.ResponseWriter;
+import com.gitblit.plugin.mcp.util.WorkerPool;
 import com.gitblit.servlet.GitblitContext;
 
 @Extension
@@ -37,22 +51,36 @@ public class MCPApiFilter extends HttpRequestFilter {
 
     private static final Logger log = LoggerFactory.getLogger(MCPApiFilter.class);
     private static final String API_PATH = "/api/.mcp-internal";
+    private static final Set<String> POST_ENDPOINTS = Collections.singleton("/file/batch");
+
+    public static final String SETTING_COMPRESSION = "mcp.compression.enabled";
+    public static final String SETTING_COMPRESSION_MIN_SIZE = "mcp.compression.minSize";
+    private static final int DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+    private static final int SC_TOO_MANY_REQUESTS = 429;
 
     // Handlers
     private final RequestHandler reposHandler;
     private final RequestHandler filesHandler;
     private final RequestHandler fileHandler;
+    private final RequestHandler fileBatchHandler;
     private final RequestHandler fileSearchHandler;
     private final RequestHandler commitSearchHandler;
+    private final RequestHandler regexSearchHandler;
     private final RequestHandler findFilesHandler;
+    private final RequestHandler cacheStatsHandler;
+    private final RequestHandler metricsHandler;
 
     public MCPApiFilter() {
         this.reposHandler = new ReposHandler();
         this.filesHandler = new FilesHandler();
         this.fileHandler = new FileHandler();
+        this.fileBatchHandler = new FileBatchHandler();
         this.fileSearchHandler = new FileSearchHandler();
         this.commitSearchHandler = new CommitSearchHandler();
+        this.regexSearchHandler = new RegexSearchHandler();
         this.findFilesHandler = new FindFilesHandler();
+        this.cacheStatsHandler = new CacheStatsHandler();
+        this.metricsHandler = new MetricsHandler();
     }
 
     @Override
@@ -72,8 +100,8 @@ public class MCPApiFilter extends HttpRequestFilter {
 
         // Set CORS headers for API access
         httpResponse.setHeader("Access-Control-Allow-Origin", "*");
-        httpResponse.setHeader("Access-Control-Allow-Methods", "GET, OPTIONS");
-        httpResponse.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type");
+        httpResponse.setHeader("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
+        httpResponse.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, If-None-Match");
 
         // Handle preflight requests
         if ("OPTIONS".equalsIgnoreCase(httpRequest.getMethod())) {
@@ -81,43 +109,198 @@ public class MCPApiFilter extends HttpRequestFilter {
             return;
         }
 
-        // Only allow GET requests
-        if (!"GET".equalsIgnoreCase(httpRequest.getMethod())) {
+        // Only allow GET requests, plus POST for endpoints that take a JSON body
+        String method = httpRequest.getMethod();
+        boolean post = "POST".equalsIgnoreCase(method) && POST_ENDPOINTS.contains(uri.substring(API_PATH.length()));
+        if (!"GET".equalsIgnoreCase(method) && !post) {
             ResponseWriter.writeError(httpResponse, HttpServletResponse.SC_METHOD_NOT_ALLOWED,
                 "Method not allowed. Only GET requests are supported.");
             return;
         }
 
+        // Measure the request; bytes are counted as sent, i.e. after compression
+        RequestMetrics metrics = RequestMetrics.start(httpRequest);
+        MeteredResponse metered = new MeteredResponse(httpResponse);
+        httpResponse = metered;
+
+        // Compress the body when the client accepts it
+        CompressingResponse compressing = null;
+        IStoredSettings settings = GitblitContext.getManager(IGitblit.class).getSettings();
+        if (settings.getBoolean(SETTING_COMPRESSION, true)) {
+            // Every response depends on Accept-Encoding, including those sent uncompressed
+            httpResponse.setHeader("Vary", "Accept-Encoding");
+            String encoding = CompressingResponse.negotiate(httpRequest.getHeader("Accept-Encoding"));
+            if (encoding != null) {
+                int minSize = Math.max(0, settings.getFilesize(SETTING_COMPRESSION_MIN_SIZE, DEFAULT_COMPRESSION_MIN_SIZE));
+                compressing = new CompressingResponse(httpResponse, encoding, minSize);
+                httpResponse = compressing;
+            }
+        }
+
+        // The time budget of the request runs from here, including any wait for a worker
+        Deadline.start(httpRequest, settings);
+
+        final Exchange exchange = new Exchange(httpRequest, httpResponse, metered, compressing, metrics);
+
+        // Authenticate user (supports Basic auth, API tokens, etc.)
         try {
-            handleRequest(httpRequest, httpResponse);
+            IAuthenticationManager authManager = GitblitContext.getManager(IAuthenticationManager.class);
+            UserModel authenticated = authManager.authenticate(httpRequest);
+            exchange.user = authenticated != null ? authenticated : UserModel.ANONYMOUS;
+        } catch (RuntimeException e) {
+            sendError(exchange, e);
+            finish(exchange);
+            return;
+        }
+        metrics.mark("auth");
+        UserModel user = exchange.user;
+
+        // Admit the request under the client's and the server's rate and concurrency limits
+        String endpoint = endpointOf(uri);
+        RateLimiter limiter = RateLimiter.get(settings);
+        if (limiter != null) {
+            String client = user.isAuthenticated ? user.username : "anonymous@" + httpRequest.getRemoteAddr();
+            RateLimiter.Permit permit = limiter.acquire(client, endpoint);
+            if (!permit.isAdmitted()) {
+                log.debug("MCP API: rejecting {} of {}, limit {}", uri, client, permit.getReason());
+                if (getHandler(endpoint) != null) {
+                    metrics.setEndpoint(endpoint);
+                }
+                reject(exchange, SC_TOO_MANY_REQUESTS, "Rate limit exceeded, retry later",
+                    permit.getRetryAfterSeconds());
+                return;
+            }
+            exchange.limiter = limiter;
+            exchange.permit = permit;
+        }
+
+        RequestExecutors executors = RequestExecutors.get(settings);
+        if (executors == null) {
+            process(exchange);
+            return;
+        }
+
+        // Hand the request to its lane; a full lane answers 503 right away
+        RequestExecutors.Lane lane = executors.laneFor(endpoint);
+        if (httpRequest.isAsyncSupported()) {
+            final AsyncContext async = httpRequest.startAsync();
+            async.setTimeout(0);
+            boolean queued = lane.execute(new WorkerPool.CancellableTask() {
+                @Override
+                public void run() {
+                    try {
+                        process(exchange);
+                    } finally {
+                        async.complete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    // The plugin is stopping; the request would otherwise never complete
+                    try {
+                        rejectBusy(exchange, 1);
+                    } finally {
+                        async.complete();
+                    }
+                }
+            });
+            if (!queued) {
+                try {
+                    rejectBusy(exchange, executors.getRetryAfterSeconds());
+                } finally {
+                    async.complete();
+                }
+            }
+        } else if (lane.enter()) {
+            try {
+                process(exchange);
+            } finally {
+                lane.leave();
+            }
+        } else {
+            rejectBusy(exchange, executors.getRetryAfterSeconds());
+        }
+    }
+
+    /**
+     * Run the handler of a request and finish its response.
+     */
+    private void process(Exchange exchange) {
+        try {
+            handleRequest(exchange.request, exchange.response, exchange.user);
         } catch (Exception e) {
-            log.error("Error processing MCP API request: " + uri, e);
-            ResponseWriter.writeError(httpResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+            sendError(exchange, e);
+        } finally {
+            finish(exchange);
+        }
+    }
+
+    /**
+     * Answer a request that failed unexpectedly with a JSON 500.
+     */
+    private void sendError(Exchange exchange, Exception e) {
+        log.error("Error processing MCP API request: " + exchange.request.getRequestURI(), e);
+        try {
+            ResponseWriter.writeError(exchange.response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
                 "Internal server error: " + e.getMessage());
+        } catch (IOException | RuntimeException writeError) {
+            log.debug("Failed to send error response", writeError);
         }
     }
 
-    private void handleRequest(HttpServletRequest request, HttpServletResponse response)
-            throws IOException {
+    /**
+     * Turn a request away because its lane is full.
+     */
+    private void rejectBusy(Exchange exchange, int retryAfterSeconds) {
+        log.debug("MCP API: rejecting {}, executors saturated", exchange.request.getRequestURI());
+        reject(exchange, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server busy, retry later", retryAfterSeconds);
+    }
 
-        // Get managers
-        IGitblit gitblit = GitblitContext.getManager(IGitblit.class);
-        IAuthenticationManager authManager = GitblitContext.getManager(IAuthenticationManager.class);
+    private void reject(Exchange exchange, int status, String message, int retryAfterSeconds) {
+        try {
+            exchange.response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+            ResponseWriter.writeError(exchange.response, status, message);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Failed to send rejection", e);
+        } finally {
+            finish(exchange);
+        }
+    }
 
-        // Authenticate user (supports Basic auth, API tokens, etc.)
-        UserModel user = authManager.authenticate(request);
-        if (user == null) {
-            user = UserModel.ANONYMOUS;
+    private void finish(Exchange exchange) {
+        if (exchange.permit != null) {
+            exchange.limiter.release(exchange.permit);
+        }
+        try {
+            if (exchange.compressing != null) {
+                exchange.compressing.finish();
+            }
+        } catch (IOException e) {
+            log.debug("Failed to finish compressed response", e);
+        } finally {
+            exchange.metrics.mark("serialize");
+            ApiMetrics.get().record(exchange.metrics, exchange.metered.getStatus(),
+                exchange.metered.getBytesWritten());
         }
+    }
 
-        // Extract endpoint path (after /api/.mcp-internal)
-        String uri = request.getRequestURI();
+    /**
+     * Endpoint path of a request URI, without the API prefix and leading slash.
+     */
+    private static String endpointOf(String uri) {
         String endpoint = uri.substring(API_PATH.length());
+        return endpoint.startsWith("/") ? endpoint.substring(1) : endpoint;
+    }
 
-        // Remove leading slash if present
-        if (endpoint.startsWith("/")) {
-            endpoint = endpoint.substring(1);
-        }
+    private void handleRequest(HttpServletRequest request, HttpServletResponse response, UserModel user)
+            throws IOException {
+
+        IGitblit gitblit = GitblitContext.getManager(IGitblit.class);
+        RequestMetrics metrics = RequestMetrics.of(request);
+
+        // Extract endpoint path (after /api/.mcp-internal)
+        String endpoint = endpointOf(request.getRequestURI());
 
         // Route to appropriate handler
         RequestHandler handler = getHandler(endpoint);
@@ -128,6 +311,7 @@ public class MCPApiFilter extends HttpRequestFilter {
             return;
         }
 
+        metrics.setEndpoint(endpoint);
         log.debug("MCP API: user={}, endpoint={}", user.username, endpoint);
         handler.handle(request, response, gitblit, user);
     }
@@ -146,14 +330,45 @@ public class MCPApiFilter extends HttpRequestFilter {
                 return filesHandler;
             case "file":
                 return fileHandler;
+            case "file/batch":
+                return fileBatchHandler;
             case "find":
                 return findFilesHandler;
             case "search/files":
                 return fileSearchHandler;
             case "search/commits":
                 return commitSearchHandler;
+            case "search/regex":
+                return regexSearchHandler;
+            case "cache/stats":
+                return cacheStatsHandler;
+            case "metrics":
+                return metricsHandler;
             default:
                 return null;
         }
     }
+
+    /**
+     * A request with the response wrappers and metrics set up for it.
+     */
+    private static class Exchange {
+        final HttpServletRequest request;
+        final HttpServletResponse response;
+        final MeteredResponse metered;
+        final CompressingResponse compressing;
+        final RequestMetrics metrics;
+        UserModel user;
+        RateLimiter limiter;
+        RateLimiter.Permit permit;
+
+        Exchange(HttpServletRequest request, HttpServletResponse response, MeteredResponse metered,
+                 CompressingResponse compressing, RequestMetrics metrics) {
+            this.request = request;
+            this.response = response;
+            this.metered = metered;
+            this.compressing = compressing;
+            this.metrics = metrics;
+        }
+    }
 }
@@ -5,6 +5,7 @@
 package com.gitblit.plugin.mcp;
 
 import com.gitblit.extensions.GitblitPlugin;
+import com.gitblit.plugin.mcp.util.WorkerPool;
 import ro.fortsoft.pf4j.PluginWrapper;
 import ro.fortsoft.pf4j.Version;
 
@@ -21,6 +22,9 @@ public class MCPSupportPlugin extends GitblitPlugin {
 
     @Override
     public void stop() {
+        WorkerPool.shutdownAll();
+        RequestExecutors.reset();
+        RateLimiter.reset();
         log.info("MCP Support Plugin stopped");
     }
 
@@ -0,0 +1,318 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import com.gitblit.IStoredSettings;
+import com.gitblit.plugin.mcp.metrics.RateLimitMetrics;
+
+/**
+ * Admission control for MCP API requests: token buckets limit the request
+ * rate, counters limit the requests in flight, both per client and for
+ * the whole server.
+ *
+ * Requests take tokens by endpoint cost, so a client can make many cheap
+ * requests or a few searches in the same budget. A client is an
+ * authenticated user, or the remote address of an anonymous request.
+ */
+class RateLimiter {
+
+    public static final String SETTING_ENABLED = "mcp.limits.enabled";
+    public static final String SETTING_USER_RATE = "mcp.limits.userRate";
+    public static final String SETTING_USER_BURST = "mcp.limits.userBurst";
+    public static final String SETTING_GLOBAL_RATE = "mcp.limits.globalRate";
+    public static final String SETTING_GLOBAL_BURST = "mcp.limits.globalBurst";
+    public static final String SETTING_USER_CONCURRENCY = "mcp.limits.userConcurrency";
+    public static final String SETTING_GLOBAL_CONCURRENCY = "mcp.limits.globalConcurrency";
+    private static final int DEFAULT_USER_RATE = 100;
+    private static final int DEFAULT_USER_BURST = 300;
+    private static final int DEFAULT_GLOBAL_RATE = 1000;
+    private static final int DEFAULT_GLOBAL_BURST = 2000;
+    private static final int DEFAULT_USER_CONCURRENCY = 16;
+    private static final int DEFAULT_GLOBAL_CONCURRENCY = 128;
+
+    /** Tokens taken by a request, by endpoint; other endpoints cost 1 */
+    private static final Map<String, Integer> COSTS = new HashMap<>();
+    static {
+        COSTS.put("find", 5);
+        COSTS.put("search/files", 5);
+        COSTS.put("search/regex", 5);
+        COSTS.put("search/commits", 3);
+        COSTS.put("file/batch", 3);
+    }
+
+    /** Clients idle this long with full buckets are forgotten */
+    private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+    private static RateLimiter instance;
+
+    /**
+     * Get the process-wide limiter, configured from the Gitblit settings on first use.
+     *
+     * @return the limiter, or null if requests are not limited
+     */
+    static synchronized RateLimiter get(IStoredSettings settings) {
+        if (!settings.getBoolean(SETTING_ENABLED, true)) {
+            return null;
+        }
+        if (instance == null) {
+            instance = new RateLimiter(
+                settings.getInteger(SETTING_USER_RATE, DEFAULT_USER_RATE),
+                settings.getInteger(SETTING_USER_BURST, DEFAULT_USER_BURST),
+                settings.getInteger(SETTING_GLOBAL_RATE, DEFAULT_GLOBAL_RATE),
+                settings.getInteger(SETTING_GLOBAL_BURST, DEFAULT_GLOBAL_BURST),
+                settings.getInteger(SETTING_USER_CONCURRENCY, DEFAULT_USER_CONCURRENCY),
+                settings.getInteger(SETTING_GLOBAL_CONCURRENCY, DEFAULT_GLOBAL_CONCURRENCY));
+        }
+        return instance;
+    }
+
+    /**
+     * Drop the limiter so it is recreated from the settings. Called when the
+     * plugin is stopped.
+     */
+    static synchronized void reset() {
+        instance = null;
+    }
+
+    /**
+     * Outcome of an admission check. An admitted request must be released
+     * when it finishes.
+     */
+    static class Permit {
+        private final Client client;
+        private final RateLimitMetrics.Reason reason;
+        private final int retryAfterSeconds;
+
+        private Permit(Client client, RateLimitMetrics.Reason reason, int retryAfterSeconds) {
+            this.client = client;
+            this.reason = reason;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        boolean isAdmitted() {
+            return reason == null;
+        }
+
+        /**
+         * The limit that turned the request away, or null if it was admitted.
+         */
+        RateLimitMetrics.Reason getReason() {
+            return reason;
+        }
+
+        int getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    private final int userRate;
+    private final int userBurst;
+    private final int userConcurrency;
+    private final int globalConcurrency;
+    private final TokenBucket global;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ConcurrentMap<String, Client> clients = new ConcurrentHashMap<>();
+    private volatile long lastSweep = System.nanoTime();
+
+    /**
+     * Limits of 0 or less are not enforced.
+     */
+    RateLimiter(int userRate, int userBurst, int globalRate, int globalBurst,
+                int userConcurrency, int globalConcurrency) {
+        this.userRate = userRate;
+        this.userBurst = Math.max(userRate, userBurst);
+        this.userConcurrency = userConcurrency;
+        this.globalConcurrency = globalConcurrency;
+        this.global = globalRate > 0 ? new TokenBucket(globalRate, Math.max(globalRate, globalBurst)) : null;
+    }
+
+    /**
+     * Admit a request of a client to an endpoint, or tell it when to retry.
+     */
+    Permit acquire(String clientId, String endpoint) {
+        long now = System.nanoTime();
+        sweep(now);
+        RateLimitMetrics metrics = RateLimitMetrics.get();
+        Enter enter = new Enter();
+        clients.compute(clientId, enter);
+        Client client = enter.client;
+        if (enter.created) {
+            metrics.setTrackedClients(clients.size());
+        }
+
+        // Concurrency first: a rejected request must not spend tokens
+        if (enter.inFlight > userConcurrency && userConcurrency > 0) {
+            client.inFlight.decrementAndGet();
+            return reject(RateLimitMetrics.Reason.USER_CONCURRENCY, 1);
+        }
+        if (inFlight.incrementAndGet() > globalConcurrency && globalConcurrency > 0) {
+            inFlight.decrementAndGet();
+            client.inFlight.decrementAndGet();
+            return reject(RateLimitMetrics.Reason.GLOBAL_CONCURRENCY, 1);
+        }
+
+        int cost = costOf(endpoint);
+        long wait = client.bucket != null ? client.bucket.take(cost, now) : 0;
+        RateLimitMetrics.Reason reason = RateLimitMetrics.Reason.USER_RATE;
+        if (wait == 0 && global != null) {
+            wait = global.take(cost, now);
+            reason = RateLimitMetrics.Reason.GLOBAL_RATE;
+            if (wait > 0 && client.bucket != null) {
+                client.bucket.refund(cost);
+            }
+        }
+        if (wait > 0) {
+            inFlight.decrementAndGet();
+            client.inFlight.decrementAndGet();
+            return reject(reason, (int) Math.max(1, (wait + 999999999L) / 1000000000L));
+        }
+
+        metrics.admitted();
+        return new Permit(client, null, 0);
+    }
+
+    /**
+     * Release an admitted request.
+     */
+    void release(Permit permit) {
+        if (!permit.isAdmitted()) {
+            return;
+        }
+        permit.client.inFlight.decrementAndGet();
+        inFlight.decrementAndGet();
+        RateLimitMetrics.get().released();
+    }
+
+    private static Permit reject(RateLimitMetrics.Reason reason, int retryAfterSeconds) {
+        RateLimitMetrics.get().rejected(reason);
+        return new Permit(null, reason, retryAfterSeconds);
+    }
+
+    private static int costOf(String endpoint) {
+        Integer cost = COSTS.get(endpoint);
+        return cost != null ? cost : 1;
+    }
+
+    /**
+     * Count a request of a client in flight, creating the client's state if
+     * needed. Runs under the map's lock for the client, like the sweep, so a
+     * client cannot be dropped between its lookup and the increment.
+     */
+    private class Enter implements BiFunction<String, Client, Client> {
+        Client client;
+        int inFlight;
+        boolean created;
+
+        @Override
+        public Client apply(String clientId, Client existing) {
+            client = existing;
+            if (client == null) {
+                client = new Client(userRate > 0 ? new TokenBucket(userRate, userBurst) : null);
+                created = true;
+            }
+            inFlight = client.inFlight.incrementAndGet();
+            return client;
+        }
+    }
+
+    /**
+     * Forget clients with nothing in flight and full buckets; they would be
+     * recreated in the same state.
+     */
+    private void sweep(final long now) {
+        if (now - lastSweep < SWEEP_INTERVAL) {
+            return;
+        }
+        synchronized (this) {
+            if (now - lastSweep < SWEEP_INTERVAL) {
+                return;
+            }
+            lastSweep = now;
+            BiFunction<String, Client, Client> removeIdle = new BiFunction<String, Client, Client>() {
+                @Override
+                public Client apply(String clientId, Client client) {
+                    boolean idle = client.inFlight.get() == 0 && (client.bucket == null || client.bucket.isFull(now));
+                    return idle ? null : client;
+                }
+            };
+            for (String clientId : clients.keySet()) {
+                clients.computeIfPresent(clientId, removeIdle);
+            }
+            RateLimitMetrics.get().setTrackedClients(clients.size());
+        }
+    }
+
+    /**
+     * Limiter state of one client.
+     */
+    private static class Client {
+        final TokenBucket bucket;
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        Client(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * Tokens refill at a fixed rate up to a capacity; a request takes as
+     * many as it costs.
+     */
+    static class TokenBucket {
+        private final double ratePerNano;
+        private final double capacity;
+        private double tokens;
+        private long refilled;
+
+        TokenBucket(int ratePerSecond, int capacity) {
+            this.ratePerNano = ratePerSecond / 1e9;
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.refilled = System.nanoTime();
+        }
+
+        /**
+         * Take tokens if there are enough.
+         *
+         * @return 0 if the tokens were taken, otherwise the nanoseconds until there are enough
+         */
+        synchronized long take(int cost, long now) {
+            refill(now);
+            double needed = Math.min(cost, capacity);
+            if (tokens >= needed) {
+                tokens -= needed;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((needed - tokens) / ratePerNano));
+        }
+
+        /**
+         * Return tokens taken by a request that was not admitted after all.
+         */
+        synchronized void refund(int cost) {
+            tokens = Math.min(capacity, tokens + Math.min(cost, capacity));
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            // Compare the difference, which stays correct when nanoTime wraps
+            if (now - refilled > 0) {
+                tokens = Math.min(capacity, tokens + (now - refilled) * ratePerNano);
+                refilled = now;
+            }
+        }
+    }
+}
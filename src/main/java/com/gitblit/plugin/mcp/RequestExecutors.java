@@ -0,0 +1,134 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+import com.gitblit.IStoredSettings;
+import com.gitblit.plugin.mcp.util.WorkerPool;
+
+/**
+ * Bounded executors that MCP API requests run on, so that slow requests
+ * cannot tie up the container threads that also serve the Gitblit UI and
+ * git over HTTP.
+ *
+ * Endpoints that walk trees or search fall into the expensive lane, the
+ * rest into the cheap lane; each lane has its own threads and queue. When
+ * a lane is full the request is rejected instead of waiting. If the
+ * container cannot suspend a request - stock Gitblit does not register its
+ * filters as async-capable - it runs on the container thread, and the lane
+ * admits no more requests than it has threads, so the rest of the
+ * container's threads stay free for the UI and git.
+ */
+class RequestExecutors {
+
+    public static final String SETTING_ENABLED = "mcp.async.enabled";
+    public static final String SETTING_CHEAP_THREADS = "mcp.async.cheapThreads";
+    public static final String SETTING_EXPENSIVE_THREADS = "mcp.async.expensiveThreads";
+    public static final String SETTING_QUEUE_SIZE = "mcp.async.queueSize";
+    public static final String SETTING_RETRY_AFTER = "mcp.async.retryAfterSeconds";
+    private static final int DEFAULT_QUEUE_SIZE = 100;
+    private static final int DEFAULT_RETRY_AFTER = 2;
+
+    private static final Set<String> EXPENSIVE_ENDPOINTS = new HashSet<>(Arrays.asList(
+        "find", "search/files", "search/regex", "search/commits", "file/batch"));
+
+    private static RequestExecutors instance;
+
+    /**
+     * Get the process-wide executors, sized from the Gitblit settings on first use.
+     *
+     * @return the executors, or null if requests should run on the container thread
+     */
+    static synchronized RequestExecutors get(IStoredSettings settings) {
+        if (!settings.getBoolean(SETTING_ENABLED, true)) {
+            return null;
+        }
+        if (instance == null) {
+            int cpus = Runtime.getRuntime().availableProcessors();
+            int queueSize = Math.max(1, settings.getInteger(SETTING_QUEUE_SIZE, DEFAULT_QUEUE_SIZE));
+            instance = new RequestExecutors(
+                new Lane("requests-cheap", settings.getInteger(SETTING_CHEAP_THREADS, Math.max(4, cpus)), queueSize),
+                new Lane("requests-expensive", settings.getInteger(SETTING_EXPENSIVE_THREADS, Math.max(2, cpus / 2)), queueSize),
+                Math.max(1, settings.getInteger(SETTING_RETRY_AFTER, DEFAULT_RETRY_AFTER)));
+        }
+        return instance;
+    }
+
+    /**
+     * Drop the executors so they are recreated from the settings. Called
+     * when the plugin is stopped, after the pools have been shut down.
+     */
+    static synchronized void reset() {
+        instance = null;
+    }
+
+    /**
+     * Threads and admission limit for one class of endpoints.
+     */
+    static class Lane {
+        private final String name;
+        private final int threads;
+        private final int queueSize;
+        private final Semaphore inline;
+
+        Lane(String name, int threads, int queueSize) {
+            this.name = name;
+            this.threads = Math.max(1, threads);
+            this.queueSize = queueSize;
+            this.inline = new Semaphore(this.threads);
+        }
+
+        /**
+         * Queue a request for a pool thread. If the plugin stops before it
+         * runs, the request is cancelled.
+         *
+         * @return false if the lane is full
+         */
+        boolean execute(WorkerPool.CancellableTask request) {
+            return WorkerPool.get(name, threads, queueSize).execute(request);
+        }
+
+        /**
+         * Admit a request that runs on the container thread. At most as many
+         * are admitted as the lane has threads; there is no queue.
+         *
+         * @return false if the lane is full; otherwise {@link #leave} must follow
+         */
+        boolean enter() {
+            return inline.tryAcquire();
+        }
+
+        void leave() {
+            inline.release();
+        }
+    }
+
+    private final Lane cheap;
+    private final Lane expensive;
+    private final int retryAfterSeconds;
+
+    private RequestExecutors(Lane cheap, Lane expensive, int retryAfterSeconds) {
+        this.cheap = cheap;
+        this.expensive = expensive;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Lane for an endpoint path such as "search/files".
+     */
+    Lane laneFor(String endpoint) {
+        return EXPENSIVE_ENDPOINTS.contains(endpoint) ? expensive : cheap;
+    }
+
+    /**
+     * Seconds a rejected client is asked to wait before retrying.
+     */
+    int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp;
+
+import java.util.Collection;
+
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+import ro.fortsoft.pf4j.Extension;
+
+import com.gitblit.extensions.ReceiveHook;
+import com.gitblit.git.GitblitReceivePack;
+import com.gitblit.plugin.mcp.index.TrigramIndexManager;
+
+/**
+ * Brings the trigram index of a repository up to date after a push.
+ */
+@Extension
+public class TrigramIndexReceiveHook extends ReceiveHook {
+
+    @Override
+    public void onPreReceive(GitblitReceivePack receivePack, Collection<ReceiveCommand> commands) {
+    }
+
+    @Override
+    public void onPostReceive(GitblitReceivePack receivePack, Collection<ReceiveCommand> commands) {
+        TrigramIndexManager.get(receivePack.getGitblit())
+            .scheduleUpdate(receivePack.getGitblit(), receivePack.getRepositoryModel().name);
+    }
+}
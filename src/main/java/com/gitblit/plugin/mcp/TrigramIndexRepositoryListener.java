@@ -0,0 +1,38 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp;
+
+import ro.fortsoft.pf4j.Extension;
+
+import com.gitblit.extensions.RepositoryLifeCycleListener;
+import com.gitblit.manager.IGitblit;
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.plugin.mcp.index.TrigramIndexManager;
+import com.gitblit.servlet.GitblitContext;
+
+/**
+ * Removes the trigram index of repositories that are deleted or renamed.
+ * A renamed repository is indexed again under its new name when searched.
+ */
+@Extension
+public class TrigramIndexRepositoryListener extends RepositoryLifeCycleListener {
+
+    @Override
+    public void onCreation(RepositoryModel repository) {
+    }
+
+    @Override
+    public void onFork(RepositoryModel origin, RepositoryModel fork) {
+    }
+
+    @Override
+    public void onRename(String oldName, RepositoryModel repository) {
+        TrigramIndexManager.get(GitblitContext.getManager(IGitblit.class)).delete(oldName);
+    }
+
+    @Override
+    public void onDeletion(RepositoryModel repository) {
+        TrigramIndexManager.get(GitblitContext.getManager(IGitblit.class)).delete(repository.name);
+    }
+}
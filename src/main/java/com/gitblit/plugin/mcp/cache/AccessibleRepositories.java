@@ -0,0 +1,46 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gitblit.models.RepositoryModel;
+
+/**
+ * Immutable snapshot of the repositories a user can view, as returned by
+ * {@code IGitblit.getRepositoryModels(user)}, with lookup by name.
+ */
+public class AccessibleRepositories {
+
+    private final List<RepositoryModel> models;
+    private final Map<String, RepositoryModel> byName;
+
+    AccessibleRepositories(List<RepositoryModel> models) {
+        this.models = Collections.unmodifiableList(new ArrayList<>(models));
+        this.byName = new HashMap<>(models.size() * 2);
+        for (RepositoryModel model : models) {
+            byName.put(model.name, model);
+        }
+    }
+
+    /**
+     * All viewable repositories, in Gitblit's order.
+     */
+    public List<RepositoryModel> getModels() {
+        return models;
+    }
+
+    /**
+     * Get a viewable repository by name.
+     *
+     * @return the model, or null if it does not exist or the user cannot view it
+     */
+    public RepositoryModel get(String name) {
+        return byName.get(name);
+    }
+}
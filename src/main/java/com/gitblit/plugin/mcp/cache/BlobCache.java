@@ -0,0 +1,127 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+
+import com.gitblit.IStoredSettings;
+
+/**
+ * Shared cache of blob content with a line index, keyed by blob id.
+ *
+ * Blob ids are content addresses, so entries never need to be invalidated
+ * and repositories that share objects, such as forks, share entries too.
+ * Used by /file and the context chunks of /search/files.
+ */
+public class BlobCache {
+
+    public static final String SETTING_MAX_SIZE = "mcp.blobCache.maxSize";
+    private static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private static BlobCache instance;
+
+    /**
+     * Get the process-wide cache, sized from the Gitblit settings on first use.
+     */
+    public static synchronized BlobCache get(IStoredSettings settings) {
+        if (instance == null) {
+            long maxBytes = settings.getFilesize(SETTING_MAX_SIZE, DEFAULT_MAX_SIZE);
+            instance = new BlobCache(maxBytes);
+        }
+        return instance;
+    }
+
+    private final WeightedLruCache<ObjectId, CachedBlob> cache;
+
+    public BlobCache(long maxBytes) {
+        this.cache = new WeightedLruCache<>("blob", maxBytes, new WeightedLruCache.Weigher<ObjectId, CachedBlob>() {
+            @Override
+            public long weigh(ObjectId key, CachedBlob blob) {
+                // ObjectId key plus content and line index
+                return 48 + blob.estimateSize();
+            }
+        });
+    }
+
+    /**
+     * Get the content of a blob, loading it through the reader
+     * and caching it if it is not cached yet.
+     */
+    public CachedBlob load(ObjectReader reader, ObjectId blobId) throws IOException {
+        CachedBlob blob = cache.get(blobId);
+        if (blob != null) {
+            return blob;
+        }
+
+        byte[] bytes = reader.open(blobId, Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE);
+        blob = wrap(bytes);
+        cache.put(blobId.copy(), blob);
+        return blob;
+    }
+
+    /**
+     * Index blob content the way the cache does, without caching it.
+     */
+    public static CachedBlob wrap(byte[] bytes) {
+        if (isBinary(bytes)) {
+            return new CachedBlob(bytes.length);
+        }
+        return new CachedBlob(bytes, detectCharset(bytes));
+    }
+
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Check if content appears to be binary by looking for null bytes.
+     */
+    static boolean isBinary(byte[] content) {
+        // Check first 8000 bytes for null bytes (common binary indicator)
+        int checkLength = Math.min(content.length, 8000);
+        for (int i = 0; i < checkLength; i++) {
+            if (content[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Pick the first charset that decodes the whole content without errors,
+     * in the same order as {@link com.gitblit.utils.StringUtils#decodeString}.
+     */
+    public static Charset detectCharset(byte[] content) {
+        Set<Charset> charsets = new LinkedHashSet<>();
+        charsets.add(StandardCharsets.UTF_8);
+        charsets.add(Charset.defaultCharset());
+        for (Charset charset : charsets) {
+            try {
+                charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(content));
+                return charset;
+            } catch (CharacterCodingException e) {
+                // try the next one
+            }
+        }
+        return StandardCharsets.ISO_8859_1;
+    }
+}
@@ -0,0 +1,18 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.cache;
+
+/**
+ * Point-in-time counters of a plugin cache.
+ */
+public class CacheStats {
+    public String name;
+    public long maxBytes;
+    public long bytes;
+    public int entries;
+    public long hits;
+    public long misses;
+    public long evictions;
+    public long rejections;  // values too large to be cached
+}
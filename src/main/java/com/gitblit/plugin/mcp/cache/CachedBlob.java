@@ -0,0 +1,98 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.cache;
+
+import java.nio.charset.Charset;
+
+/**
+ * Content of a blob as held by {@link BlobCache}.
+ *
+ * Text is kept as raw bytes together with the offset of every line start,
+ * so reading a range of lines decodes only those lines. Lines are split on
+ * '\n' like {@code String.split("\n", -1)}. Binary blobs keep only their
+ * size so that callers can reject them without loading the object again.
+ */
+public class CachedBlob {
+
+    /** Size of the raw blob in bytes */
+    public final long size;
+    public final boolean binary;
+
+    private final byte[] content;       // null for binary blobs
+    private final Charset charset;
+    private final int[] lineStarts;
+
+    CachedBlob(long size) {
+        this.size = size;
+        this.binary = true;
+        this.content = null;
+        this.charset = null;
+        this.lineStarts = new int[0];
+    }
+
+    CachedBlob(byte[] content, Charset charset) {
+        this.size = content.length;
+        this.binary = false;
+        this.content = content;
+        this.charset = charset;
+        this.lineStarts = indexLines(content);
+    }
+
+    /**
+     * Number of lines; 0 for binary blobs.
+     */
+    public int getLineCount() {
+        return lineStarts.length;
+    }
+
+    /**
+     * Decode a single line, without its line terminator.
+     *
+     * @param line 0-based line index
+     */
+    public String getLine(int line) {
+        int start = lineStarts[line];
+        int end = line + 1 < lineStarts.length ? lineStarts[line + 1] - 1 : content.length;
+        return new String(content, start, end - start, charset);
+    }
+
+    /**
+     * Decode the lines in [from, to).
+     */
+    public String[] getLines(int from, int to) {
+        String[] lines = new String[to - from];
+        for (int i = from; i < to; i++) {
+            lines[i - from] = getLine(i);
+        }
+        return lines;
+    }
+
+    /**
+     * Approximate retained heap: content bytes and line index.
+     */
+    long estimateSize() {
+        long estimate = 64;
+        if (content != null) {
+            estimate += 16 + content.length + 16 + 4L * lineStarts.length;
+        }
+        return estimate;
+    }
+
+    private static int[] indexLines(byte[] content) {
+        int count = 1;
+        for (byte b : content) {
+            if (b == '\n') {
+                count++;
+            }
+        }
+        int[] starts = new int[count];
+        int line = 1;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == '\n') {
+                starts[line++] = i + 1;
+            }
+        }
+        return starts;
+    }
+}
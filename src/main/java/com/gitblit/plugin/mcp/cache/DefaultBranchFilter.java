@@ -0,0 +1,55 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.cache;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.utils.StringUtils;
+
+/**
+ * Lucene clause that restricts a search to the default branches of the
+ * searched repositories.
+ *
+ * Gitblit already limits a search to the given repositories, so the clause
+ * only needs each distinct HEAD ref once; with hundreds of repositories
+ * that mostly share a handful of default branch names this keeps the query
+ * small for Lucene to parse and rewrite. HEAD refs come from the
+ * {@link AccessibleRepositories} snapshot.
+ */
+public class DefaultBranchFilter {
+
+    private DefaultBranchFilter() {
+    }
+
+    /**
+     * Build the clause for the given repositories.
+     *
+     * @return the clause, e.g. {@code branch:"refs/heads/main" OR branch:"refs/heads/master"},
+     *         or null if none of the repositories has a HEAD
+     */
+    public static String forRepositories(AccessibleRepositories access, Collection<String> repos) {
+        Set<String> heads = new TreeSet<>();
+        for (String repoName : repos) {
+            RepositoryModel model = access.get(repoName);
+            if (model != null && !StringUtils.isEmpty(model.HEAD)) {
+                heads.add(model.HEAD);
+            }
+        }
+        if (heads.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder clause = new StringBuilder();
+        for (String head : heads) {
+            if (clause.length() > 0) {
+                clause.append(" OR ");
+            }
+            clause.append("branch:\"").append(head).append("\"");
+        }
+        return clause.toString();
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import com.gitblit.IStoredSettings;
+import com.gitblit.plugin.mcp.util.Deadline;
+
+/**
+ * Shared cache of flattened file path lists, keyed by repository and tree id.
+ *
+ * A tree id fully determines the paths below it, so entries never need to be
+ * invalidated; stale trees simply age out of the LRU. Trees whose path list
+ * would take more than a quarter of the budget are remembered as oversized
+ * and left to a filtered walk by the caller. The default budget holds trees
+ * of a few hundred thousand paths. Concurrent misses on the same tree share
+ * one walk.
+ */
+public class PathIndexCache {
+
+    public static final String SETTING_MAX_SIZE = "mcp.pathIndexCache.maxSize";
+    private static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    private static PathIndexCache instance;
+
+    /**
+     * Get the process-wide cache, sized from the Gitblit settings on first use.
+     */
+    public static synchronized PathIndexCache get(IStoredSettings settings) {
+        if (instance == null) {
+            long maxBytes = settings.getFilesize(SETTING_MAX_SIZE, DEFAULT_MAX_SIZE);
+            instance = new PathIndexCache(maxBytes);
+        }
+        return instance;
+    }
+
+    private static final int MAX_OVERSIZED_KEYS = 256;
+
+    /** Paths walked between deadline checks, minus one */
+    private static final int DEADLINE_CHECK_MASK = 1023;
+
+    private final WeightedLruCache<Key, String[]> cache;
+    private final Map<Key, Boolean> oversized;
+    private final ConcurrentMap<Key, Walk> walks = new ConcurrentHashMap<>();
+
+    public PathIndexCache(long maxBytes) {
+        this.cache = new WeightedLruCache<>("pathIndex", maxBytes, new WeightedLruCache.Weigher<Key, String[]>() {
+            @Override
+            public long weigh(Key key, String[] paths) {
+                return estimateSize(key, paths);
+            }
+        });
+        this.oversized = new LinkedHashMap<Key, Boolean>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+                return size() > MAX_OVERSIZED_KEYS;
+            }
+        };
+    }
+
+    /**
+     * Get the sorted list of all file paths in a tree, walking and caching
+     * the tree if it is not cached yet.
+     *
+     * @param deadline once passed, a walk stops and nothing is cached
+     * @return the paths, or null if the tree is too large to be cached or
+     *         the deadline passed during the walk
+     */
+    public String[] getPaths(String repoName, Repository repository, ObjectId treeId, Deadline deadline)
+            throws IOException {
+        Key key = new Key(repoName, treeId);
+        long maxEntrySize = cache.getMaxEntryWeight();
+        while (true) {
+            String[] paths = cache.get(key);
+            if (paths != null) {
+                return paths;
+            }
+            if (maxEntrySize <= 0) {
+                return null;
+            }
+            synchronized (oversized) {
+                if (oversized.containsKey(key)) {
+                    return null;
+                }
+            }
+
+            // Wait for a walk of the same tree that is already running
+            Walk walk = new Walk();
+            Walk running = walks.putIfAbsent(key, walk);
+            if (running != null) {
+                if (!running.await(deadline)) {
+                    return null;
+                }
+                if (running.paths != null || running.oversized) {
+                    return running.paths;
+                }
+                // That walk hit its own deadline or failed; walk the tree here
+                continue;
+            }
+
+            try {
+                paths = walk(repository, treeId, maxEntrySize, deadline);
+                if (paths != null) {
+                    cache.put(key, paths);
+                    walk.paths = paths;
+                } else if (!deadline.isExpired()) {
+                    synchronized (oversized) {
+                        oversized.put(key, Boolean.TRUE);
+                    }
+                    walk.oversized = true;
+                }
+                return paths;
+            } finally {
+                walks.remove(key, walk);
+                walk.done.countDown();
+            }
+        }
+    }
+
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Recursively walk a tree and return its file paths in sorted order.
+     *
+     * @return the paths, or null as soon as their estimated size exceeds
+     *         maxSize or the deadline passes
+     */
+    static String[] walk(Repository repository, ObjectId treeId, long maxSize, Deadline deadline)
+            throws IOException {
+        List<String> paths = new ArrayList<>();
+        long size = 0;
+        try (TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(treeId);
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                if ((paths.size() & DEADLINE_CHECK_MASK) == 0 && deadline.isExpired()) {
+                    return null;
+                }
+                String path = treeWalk.getPathString();
+                size += estimateSize(path);
+                if (size > maxSize) {
+                    return null;
+                }
+                paths.add(path);
+            }
+        }
+        String[] result = paths.toArray(new String[paths.size()]);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Approximate retained heap of a path list: string headers and character
+     * data plus the backing array.
+     */
+    static long estimateSize(Key key, String[] paths) {
+        long size = 64 + 16;
+        for (String path : paths) {
+            size += estimateSize(path);
+        }
+        return size;
+    }
+
+    private static long estimateSize(String path) {
+        // array slot, String header and character data
+        return 8 + 40 + 2L * path.length();
+    }
+
+    /**
+     * A walk in progress, for requests that miss the same tree meanwhile.
+     */
+    private static class Walk {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile String[] paths;
+        volatile boolean oversized;
+
+        /**
+         * @return false if the deadline passed first
+         */
+        boolean await(Deadline deadline) {
+            try {
+                long remaining = deadline.remainingNanos();
+                return remaining > 0 && done.await(remaining, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    static final class Key {
+        final String repoName;
+        final ObjectId treeId;
+
+        Key(String repoName, ObjectId treeId) {
+            this.repoName = repoName;
+            this.treeId = treeId.copy();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return repoName.equals(other.repoName) && treeId.equals(other.treeId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * repoName.hashCode() + treeId.hashCode();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.cache;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gitblit.IStoredSettings;
+import com.gitblit.manager.IGitblit;
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.UserModel;
+
+/**
+ * Short-lived per-user snapshots of the accessible repositories.
+ *
+ * Building the list checks permissions on every repository, which adds up
+ * on large servers when done for every request. Snapshots are dropped when
+ * repositories or users are created, renamed or deleted (see the plugin's
+ * lifecycle listeners); changes that Gitblit does not announce, such as
+ * edited permissions, are picked up once the TTL expires. Expired snapshots
+ * are pruned at most once per TTL, so users who stop making requests do
+ * not keep theirs.
+ */
+public class RepositoryAccessCache {
+
+    public static final String SETTING_TTL = "mcp.accessCache.ttlSeconds";
+    private static final int DEFAULT_TTL_SECONDS = 10;
+
+    private static RepositoryAccessCache instance;
+
+    /**
+     * Get the process-wide cache, configured from the Gitblit settings on first use.
+     */
+    public static synchronized RepositoryAccessCache get(IStoredSettings settings) {
+        if (instance == null) {
+            int ttl = settings.getInteger(SETTING_TTL, DEFAULT_TTL_SECONDS);
+            instance = new RepositoryAccessCache(TimeUnit.SECONDS.toNanos(Math.max(0, ttl)));
+        }
+        return instance;
+    }
+
+    /**
+     * Drop all snapshots of the process-wide cache, if it exists.
+     */
+    public static void invalidateAll() {
+        RepositoryAccessCache cache;
+        synchronized (RepositoryAccessCache.class) {
+            cache = instance;
+        }
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+
+    private static class Entry {
+        final AccessibleRepositories repositories;
+        final long generation;
+        final long expires;
+
+        Entry(AccessibleRepositories repositories, long generation, long expires) {
+            this.repositories = repositories;
+            this.generation = generation;
+            this.expires = expires;
+        }
+    }
+
+    private final long ttlNanos;
+    private final ConcurrentHashMap<String, Entry> snapshots = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long lastPrune = System.nanoTime();
+
+    public RepositoryAccessCache(long ttlNanos) {
+        this.ttlNanos = ttlNanos;
+    }
+
+    /**
+     * Get the repositories the user can view, from a recent snapshot if
+     * one is available.
+     */
+    public AccessibleRepositories get(IGitblit gitblit, UserModel user) {
+        if (ttlNanos <= 0 || user.username == null) {
+            return new AccessibleRepositories(gitblit.getRepositoryModels(user));
+        }
+
+        long now = System.nanoTime();
+        AccessibleRepositories cached = cached(user, now);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Snapshots built across an invalidation carry the old generation and are never used
+        long current = generation.get();
+        AccessibleRepositories repositories = new AccessibleRepositories(gitblit.getRepositoryModels(user));
+        snapshots.put(user.username, new Entry(repositories, current, now + ttlNanos));
+        prune(now);
+        return repositories;
+    }
+
+    /**
+     * Get one repository the user can view. Uses a recent snapshot if one
+     * is available, and otherwise checks just this repository rather than
+     * building a snapshot of all of them.
+     *
+     * @return the model, or null if it does not exist or the user cannot view it
+     */
+    public RepositoryModel getRepository(IGitblit gitblit, UserModel user, String name) {
+        if (ttlNanos > 0 && user.username != null) {
+            AccessibleRepositories cached = cached(user, System.nanoTime());
+            if (cached != null) {
+                return cached.get(name);
+            }
+        }
+
+        // Same filter as getRepositoryModels(user): empty repositories only for those who can push
+        RepositoryModel model = gitblit.getRepositoryModel(user, name);
+        if (model == null || (!model.hasCommits && !user.canPush(model))) {
+            return null;
+        }
+        return model;
+    }
+
+    private AccessibleRepositories cached(UserModel user, long now) {
+        Entry entry = snapshots.get(user.username);
+        if (entry != null && entry.generation == generation.get() && now - entry.expires < 0) {
+            return entry.repositories;
+        }
+        return null;
+    }
+
+    /**
+     * Drop expired and outdated snapshots, at most once per TTL.
+     */
+    private void prune(long now) {
+        if (now - lastPrune < ttlNanos) {
+            return;
+        }
+        synchronized (this) {
+            if (now - lastPrune < ttlNanos) {
+                return;
+            }
+            lastPrune = now;
+            long current = generation.get();
+            Iterator<Entry> it = snapshots.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.generation != current || now - entry.expires >= 0) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop all snapshots.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshots.clear();
+    }
+}
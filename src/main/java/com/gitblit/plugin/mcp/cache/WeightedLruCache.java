@@ -0,0 +1,150 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe LRU cache bounded by the summed weight of its entries
+ * rather than by entry count.
+ *
+ * Entries heavier than a quarter of the budget are rejected outright so
+ * that a single huge value cannot flush the rest of the cache.
+ */
+public class WeightedLruCache<K, V> {
+
+    /**
+     * Computes the approximate retained size of an entry in bytes.
+     */
+    public interface Weigher<K, V> {
+        long weigh(K key, V value);
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long weight;
+
+        Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final String name;
+    private final long maxWeight;
+    private final Weigher<K, V> weigher;
+    private final LinkedHashMap<K, Entry<V>> map;
+    private long weight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    public WeightedLruCache(String name, long maxWeight, Weigher<K, V> weigher) {
+        this.name = name;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.map = new LinkedHashMap<>(64, 0.75f, true);
+    }
+
+    /**
+     * Get a cached value, or null if absent.
+     */
+    public V get(K key) {
+        Entry<V> entry;
+        synchronized (this) {
+            entry = map.get(key);
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Largest weight of a single value accepted by {@link #put}.
+     */
+    public long getMaxEntryWeight() {
+        return maxWeight / 4;
+    }
+
+    /**
+     * Check whether a value of the given weight would be accepted by {@link #put}.
+     */
+    public boolean accepts(long valueWeight) {
+        return maxWeight > 0 && valueWeight <= getMaxEntryWeight();
+    }
+
+    /**
+     * Add a value, evicting least recently used entries to stay within budget.
+     *
+     * @return true if the value was cached
+     */
+    public boolean put(K key, V value) {
+        long entryWeight = weigher.weigh(key, value);
+        if (!accepts(entryWeight)) {
+            rejections.incrementAndGet();
+            return false;
+        }
+
+        synchronized (this) {
+            Entry<V> previous = map.put(key, new Entry<>(value, entryWeight));
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            weight += entryWeight;
+
+            Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+            while (weight > maxWeight && it.hasNext()) {
+                Map.Entry<K, Entry<V>> eldest = it.next();
+                weight -= eldest.getValue().weight;
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove an entry, if present.
+     */
+    public synchronized void remove(K key) {
+        Entry<V> previous = map.remove(key);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+    }
+
+    /**
+     * Remove all entries. Counters are left untouched.
+     */
+    public synchronized void clear() {
+        map.clear();
+        weight = 0;
+    }
+
+    /**
+     * Snapshot the cache counters.
+     */
+    public CacheStats getStats() {
+        CacheStats stats = new CacheStats();
+        stats.name = name;
+        stats.maxBytes = maxWeight;
+        synchronized (this) {
+            stats.entries = map.size();
+            stats.bytes = weight;
+        }
+        stats.hits = hits.get();
+        stats.misses = misses.get();
+        stats.evictions = evictions.get();
+        stats.rejections = rejections.get();
+        return stats;
+    }
+}
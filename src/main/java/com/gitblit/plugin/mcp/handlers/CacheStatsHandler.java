@@ -0,0 +1,45 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.handlers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.gitblit.manager.IGitblit;
+import com.gitblit.models.UserModel;
+import com.gitblit.plugin.mcp.cache.BlobCache;
+import com.gitblit.plugin.mcp.cache.CacheStats;
+import com.gitblit.plugin.mcp.cache.PathIndexCache;
+import com.gitblit.plugin.mcp.index.TrigramIndexManager;
+import com.gitblit.plugin.mcp.model.CacheStatsResponse;
+import com.gitblit.plugin.mcp.util.ResponseWriter;
+
+/**
+ * Handler for GET /api/.mcp-internal/cache/stats
+ * Reports hit, miss and eviction counters of the plugin caches. Admin only.
+ */
+public class CacheStatsHandler implements RequestHandler {
+
+    @Override
+    public void handle(HttpServletRequest request, HttpServletResponse response,
+                       IGitblit gitblit, UserModel user) throws IOException {
+
+        if (!user.canAdmin()) {
+            ResponseWriter.writeError(response, HttpServletResponse.SC_FORBIDDEN,
+                "Administrator access required");
+            return;
+        }
+
+        List<CacheStats> caches = new ArrayList<>();
+        caches.add(PathIndexCache.get(gitblit.getSettings()).getStats());
+        caches.add(BlobCache.get(gitblit.getSettings()).getStats());
+        caches.add(TrigramIndexManager.get(gitblit).getStats());
+
+        ResponseWriter.writeJson(response, new CacheStatsResponse(caches));
+    }
+}
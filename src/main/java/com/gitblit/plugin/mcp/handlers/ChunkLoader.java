@@ -0,0 +1,425 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.handlers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.IStoredSettings;
+import com.gitblit.manager.IGitblit;
+import com.gitblit.models.SearchResult;
+import com.gitblit.plugin.mcp.cache.BlobCache;
+import com.gitblit.plugin.mcp.cache.CachedBlob;
+import com.gitblit.plugin.mcp.model.FileSearchResponse;
+import com.gitblit.plugin.mcp.util.Deadline;
+import com.gitblit.plugin.mcp.util.PackOrder;
+import com.gitblit.plugin.mcp.util.WorkerPool;
+
+/**
+ * Builds the context chunks of /search/files results.
+ *
+ * Hits are grouped by repository and commit so that each repository is
+ * opened once and each commit parsed once. Repositories are resolved
+ * concurrently, then the distinct blobs of each repository are split into
+ * pack-ordered slices that are loaded concurrently, each slice with its own
+ * ObjectReader. Both phases share one deadline, the configured timeout or
+ * the request's deadline, whichever comes first; hits whose chunk is not
+ * ready by then are reported as timed out instead of delaying the response.
+ * Decoded blobs come from the shared {@link BlobCache}.
+ *
+ * Every line on which the {@link MatchLocator} finds a query term gets a
+ * context window; overlapping and adjacent windows are merged into one
+ * chunk, up to a per-file number of chunks. The term positions are
+ * returned with the chunks, up to {@link #MAX_MATCHES} per file; files with
+ * more are flagged.
+ */
+class ChunkLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkLoader.class);
+
+    public static final String SETTING_THREADS = "mcp.search.chunkThreads";
+    public static final String SETTING_MAX_PARALLELISM = "mcp.search.chunkParallelism";
+    public static final String SETTING_TIMEOUT = "mcp.search.chunkTimeoutMs";
+
+    private static final int DEFAULT_MAX_PARALLELISM = 4;
+    private static final int DEFAULT_TIMEOUT_MS = 2000;
+
+    /** Term positions reported per file */
+    static final int MAX_MATCHES = 50;
+
+    // Hit state once its chunk is built or known to be unavailable; 0 = pending
+    private static final int DONE = 1;
+
+    private final IGitblit gitblit;
+    private final int contextLines;
+    private final MatchLocator locator;
+    private final int maxChunks;
+    private final BlobCache blobCache;
+    private final WorkerPool pool;
+    private final int parallelism;
+    private final long timeoutNanos;
+
+    ChunkLoader(IGitblit gitblit, int contextLines, MatchLocator locator, int maxChunks) {
+        this.gitblit = gitblit;
+        this.contextLines = contextLines;
+        this.locator = locator;
+        this.maxChunks = Math.max(1, maxChunks);
+
+        IStoredSettings settings = gitblit.getSettings();
+        this.blobCache = BlobCache.get(settings);
+        this.pool = WorkerPool.get("chunks",
+            settings.getInteger(SETTING_THREADS, Runtime.getRuntime().availableProcessors()));
+        this.parallelism = Math.max(1, settings.getInteger(SETTING_MAX_PARALLELISM, DEFAULT_MAX_PARALLELISM));
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+            Math.max(1, settings.getInteger(SETTING_TIMEOUT, DEFAULT_TIMEOUT_MS)));
+    }
+
+    /**
+     * Chunks built for a list of hits, aligned with the hits.
+     */
+    static class Result {
+        /** Chunks per hit in line order; null where none could be built or they timed out */
+        final List<List<FileSearchResponse.Chunk>> chunks;
+        /** Whether a hit had more context windows than the per-file chunk limit */
+        final boolean[] truncated;
+        /** Term positions per hit; null where the file was not read */
+        final List<List<FileSearchResponse.Match>> matches;
+        /** Whether a hit had more term positions than {@link #MAX_MATCHES} */
+        final boolean[] matchesTruncated;
+        /** Whether the chunk of a hit was still pending at the deadline */
+        final boolean[] timedOut;
+
+        Result(int size) {
+            this.chunks = new ArrayList<>(Collections.<List<FileSearchResponse.Chunk>>nCopies(size, null));
+            this.truncated = new boolean[size];
+            this.matches = new ArrayList<>(Collections.<List<FileSearchResponse.Match>>nCopies(size, null));
+            this.matchesTruncated = new boolean[size];
+            this.timedOut = new boolean[size];
+        }
+    }
+
+    /**
+     * Build a chunk for each hit, waiting no longer than the configured
+     * timeout or the request deadline.
+     */
+    Result load(final List<SearchResult> hits, Deadline requestDeadline) {
+        final long deadline = requestDeadline.earliest(System.nanoTime() + timeoutNanos);
+        final AtomicReferenceArray<Located> chunks = new AtomicReferenceArray<>(hits.size());
+        final AtomicIntegerArray states = new AtomicIntegerArray(hits.size());
+
+        // Group hit indices by repository, preserving first-seen order
+        Map<String, List<Integer>> byRepository = new LinkedHashMap<>();
+        for (int i = 0; i < hits.size(); i++) {
+            String repoName = hits.get(i).repository;
+            List<Integer> group = byRepository.get(repoName);
+            if (group == null) {
+                group = new ArrayList<>();
+                byRepository.put(repoName, group);
+            }
+            group.add(i);
+        }
+
+        // Phase 1: resolve the blobs of each repository
+        final List<String> repoNames = new ArrayList<>(byRepository.keySet());
+        final List<List<Integer>> groups = new ArrayList<>(byRepository.values());
+        final AtomicReferenceArray<BlobGroup> blobGroups = new AtomicReferenceArray<>(repoNames.size());
+        pool.forEach(repoNames.size(), parallelism, deadline, new WorkerPool.IndexedTask() {
+            @Override
+            public boolean run(int index) {
+                String repoName = repoNames.get(index);
+                try {
+                    blobGroups.set(index, resolveBlobs(repoName, hits, groups.get(index), states));
+                } catch (Exception e) {
+                    log.warn("Failed to fetch context for {}: {}", repoName, e.getMessage());
+                    markDone(groups.get(index), states);
+                }
+                return true;
+            }
+        });
+
+        // Phase 2: load blobs in pack-ordered slices
+        final List<Slice> slices = new ArrayList<>();
+        for (int i = 0; i < repoNames.size(); i++) {
+            BlobGroup group = blobGroups.get(i);
+            if (group != null) {
+                addSlices(group, slices);
+            }
+        }
+        if (!slices.isEmpty()) {
+            pool.forEach(slices.size(), parallelism, deadline, new WorkerPool.IndexedTask() {
+                @Override
+                public boolean run(int index) {
+                    loadSlice(slices.get(index), hits, chunks, states);
+                    return true;
+                }
+            });
+        }
+
+        // Snapshot; loads still running in the background no longer count
+        Result result = new Result(hits.size());
+        int timedOut = 0;
+        for (int i = 0; i < hits.size(); i++) {
+            if (states.get(i) == DONE) {
+                Located located = chunks.get(i);
+                if (located != null) {
+                    result.chunks.set(i, located.chunks);
+                    result.truncated[i] = located.truncated;
+                    result.matches.set(i, located.matches);
+                    result.matchesTruncated[i] = located.matchesTruncated;
+                }
+            } else {
+                result.timedOut[i] = true;
+                timedOut++;
+            }
+        }
+        if (timedOut > 0) {
+            log.debug("Context chunks of {} of {} hits timed out", timedOut, hits.size());
+        }
+        return result;
+    }
+
+    /**
+     * Resolve the hits of one repository to their blobs, parsing every
+     * commit only once. Hits without a blob are marked done.
+     */
+    private BlobGroup resolveBlobs(String repoName, List<SearchResult> hits, List<Integer> indices,
+                                   AtomicIntegerArray states) throws IOException {
+        Repository repository = gitblit.getRepository(repoName);
+        if (repository == null) {
+            markDone(indices, states);
+            return null;
+        }
+
+        try (ObjectReader reader = repository.newObjectReader();
+             RevWalk revWalk = new RevWalk(reader)) {
+
+            Map<String, RevCommit> commits = new LinkedHashMap<>();
+            Map<ObjectId, List<Integer>> byBlob = new LinkedHashMap<>();
+            for (int index : indices) {
+                SearchResult sr = hits.get(index);
+                try {
+                    RevCommit commit = commits.get(sr.commitId);
+                    if (commit == null) {
+                        commit = revWalk.parseCommit(ObjectId.fromString(sr.commitId));
+                        commits.put(sr.commitId, commit);
+                    }
+
+                    ObjectId blobId = findBlob(reader, commit, sr.path);
+                    if (blobId == null) {
+                        states.set(index, DONE);
+                        continue;
+                    }
+                    List<Integer> sameBlob = byBlob.get(blobId);
+                    if (sameBlob == null) {
+                        sameBlob = new ArrayList<>();
+                        byBlob.put(blobId, sameBlob);
+                    }
+                    sameBlob.add(index);
+                } catch (Exception e) {
+                    log.warn("Failed to fetch context for {}:{}: {}", sr.repository, sr.path, e.getMessage());
+                    states.set(index, DONE);
+                }
+            }
+
+            return new BlobGroup(repoName, PackOrder.sort(repository, byBlob.keySet()), byBlob);
+        } finally {
+            repository.close();
+        }
+    }
+
+    /**
+     * Split the pack-ordered blobs of a repository into up to
+     * {@code parallelism} contiguous slices.
+     */
+    private void addSlices(BlobGroup group, List<Slice> slices) {
+        int size = group.blobs.size();
+        if (size == 0) {
+            return;
+        }
+        int sliceSize = (size + parallelism - 1) / parallelism;
+        for (int from = 0; from < size; from += sliceSize) {
+            slices.add(new Slice(group, from, Math.min(size, from + sliceSize)));
+        }
+    }
+
+    /**
+     * Load the blobs of one slice and build the chunks of their hits.
+     */
+    private void loadSlice(Slice slice, List<SearchResult> hits,
+                           AtomicReferenceArray<Located> chunks, AtomicIntegerArray states) {
+        BlobGroup group = slice.group;
+        List<ObjectId> blobs = group.blobs.subList(slice.from, slice.to);
+
+        Repository repository = gitblit.getRepository(group.repoName);
+        if (repository == null) {
+            for (ObjectId blobId : blobs) {
+                markDone(group.hitsByBlob.get(blobId), states);
+            }
+            return;
+        }
+
+        try (ObjectReader reader = repository.newObjectReader()) {
+            for (ObjectId blobId : blobs) {
+                List<Integer> indices = group.hitsByBlob.get(blobId);
+                try {
+                    CachedBlob blob = blobCache.load(reader, blobId);
+                    if (!blob.binary) {
+                        // Hits on the same blob share their chunk and positions
+                        Located located = buildChunks(blob);
+                        for (int index : indices) {
+                            chunks.set(index, located);
+                        }
+                    }
+                } catch (Exception e) {
+                    log.warn("Failed to fetch context for {}:{}: {}", group.repoName, blobId.name(), e.getMessage());
+                }
+                markDone(indices, states);
+            }
+        } finally {
+            repository.close();
+        }
+    }
+
+    private static void markDone(List<Integer> indices, AtomicIntegerArray states) {
+        for (int index : indices) {
+            states.set(index, DONE);
+        }
+    }
+
+    private static ObjectId findBlob(ObjectReader reader, RevCommit commit, String path) throws IOException {
+        try (TreeWalk treeWalk = TreeWalk.forPath(reader, path, commit.getTree())) {
+            if (treeWalk == null || treeWalk.getRawMode(0) == 0 || treeWalk.isSubtree()) {
+                return null;
+            }
+            return treeWalk.getObjectId(0);
+        }
+    }
+
+    /**
+     * Locate the query terms and build chunks of context around them,
+     * merging windows that overlap or touch. Without a located term there
+     * is a single chunk at the top of the file.
+     */
+    private Located buildChunks(CachedBlob blob) {
+        // One match past the cap tells whether the file has more
+        List<FileSearchResponse.Match> matches = locator.locate(blob, MAX_MATCHES + 1);
+        boolean matchesTruncated = matches.size() > MAX_MATCHES;
+        if (matchesTruncated) {
+            matches = matches.subList(0, MAX_MATCHES);
+        }
+        int lineCount = blob.getLineCount();
+        List<FileSearchResponse.Chunk> chunks = new ArrayList<>();
+        int halfContext = contextLines / 2;
+
+        if (matches.isEmpty()) {
+            chunks.add(buildChunk(blob, 0, Math.min(lineCount, halfContext + 1)));
+            return new Located(chunks, matches, false, false);
+        }
+
+        // Windows are [start, end) in 0-based lines; matches come in line order
+        int start = -1;
+        int end = -1;
+        // Matches past the cap get no window either
+        boolean truncated = matchesTruncated;
+        for (FileSearchResponse.Match match : matches) {
+            int line = match.line - 1;
+            int windowStart = Math.max(0, line - halfContext);
+            int windowEnd = Math.min(lineCount, line + halfContext + 1);
+            if (start >= 0 && windowStart <= end) {
+                end = Math.max(end, windowEnd);
+                continue;
+            }
+            if (start >= 0) {
+                chunks.add(buildChunk(blob, start, end));
+            }
+            if (chunks.size() >= maxChunks) {
+                truncated = true;
+                start = -1;
+                break;
+            }
+            start = windowStart;
+            end = windowEnd;
+        }
+        if (start >= 0) {
+            chunks.add(buildChunk(blob, start, end));
+        }
+        return new Located(chunks, matches, truncated, matchesTruncated);
+    }
+
+    /**
+     * Build a chunk of the lines in [startLine, endLine), prefixed with line numbers.
+     */
+    private static FileSearchResponse.Chunk buildChunk(CachedBlob blob, int startLine, int endLine) {
+        StringBuilder chunkContent = new StringBuilder();
+        for (int i = startLine; i < endLine; i++) {
+            chunkContent.append(i + 1).append(": ").append(blob.getLine(i)).append("\n");
+        }
+        return new FileSearchResponse.Chunk(startLine + 1, endLine, chunkContent.toString());
+    }
+
+    /**
+     * Chunks and term positions of one blob.
+     */
+    private static class Located {
+        final List<FileSearchResponse.Chunk> chunks;
+        final List<FileSearchResponse.Match> matches;
+        final boolean truncated;
+        final boolean matchesTruncated;
+
+        Located(List<FileSearchResponse.Chunk> chunks, List<FileSearchResponse.Match> matches,
+                boolean truncated, boolean matchesTruncated) {
+            this.chunks = chunks;
+            this.matches = matches;
+            this.truncated = truncated;
+            this.matchesTruncated = matchesTruncated;
+        }
+    }
+
+    /**
+     * Distinct blobs of one repository, in pack order, with the hits that
+     * refer to each.
+     */
+    private static class BlobGroup {
+        final String repoName;
+        final List<ObjectId> blobs;
+        final Map<ObjectId, List<Integer>> hitsByBlob;
+
+        BlobGroup(String repoName, List<ObjectId> blobs, Map<ObjectId, List<Integer>> hitsByBlob) {
+            this.repoName = repoName;
+            this.blobs = blobs;
+            this.hitsByBlob = hitsByBlob;
+        }
+    }
+
+    /**
+     * Contiguous range [from, to) of a repository's pack-ordered blobs.
+     */
+    private static class Slice {
+        final BlobGroup group;
+        final int from;
+        final int to;
+
+        Slice(BlobGroup group, int from, int to) {
+            this.group = group;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
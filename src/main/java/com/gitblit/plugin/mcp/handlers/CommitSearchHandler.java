@@ -6,7 +6,6 @@ package com.gitblit.plugin.mcp.handlers;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.TimeZone;
 
@@ -21,6 +20,10 @@ import com.gitblit.manager.IGitblit;
 import com.gitblit.models.RepositoryModel;
 import com.gitblit.models.SearchResult;
 import com.gitblit.models.UserModel;
+import com.gitblit.plugin.mcp.cache.AccessibleRepositories;
+import com.gitblit.plugin.mcp.cache.DefaultBranchFilter;
+import com.gitblit.plugin.mcp.cache.RepositoryAccessCache;
+import com.gitblit.plugin.mcp.metrics.RequestMetrics;
 import com.gitblit.plugin.mcp.model.CommitSearchResponse;
 import com.gitblit.plugin.mcp.util.ResponseWriter;
 import com.gitblit.utils.ArrayUtils;
@@ -104,24 +107,16 @@ public class CommitSearchHandler implements RequestHandler {
         }
 
         // Determine repositories to search
-        List<String> searchRepos = getSearchRepositories(gitblit, user, reposParam);
+        AccessibleRepositories access = RepositoryAccessCache.get(gitblit.getSettings()).get(gitblit, user);
+        List<String> searchRepos = getSearchRepositories(access, reposParam);
 
         // Add branch filter - use explicit branch or default branches
         if (!StringUtils.isEmpty(branch)) {
             luceneQuery.append(" AND branch:\"").append(branch).append("\"");
         } else {
-            // Build filter using default branch of each repository
-            StringBuilder branchFilter = new StringBuilder();
-            for (String repoName : searchRepos) {
-                RepositoryModel model = gitblit.getRepositoryModel(repoName);
-                if (model != null && !StringUtils.isEmpty(model.HEAD)) {
-                    if (branchFilter.length() > 0) {
-                        branchFilter.append(" OR ");
-                    }
-                    branchFilter.append("branch:\"").append(model.HEAD).append("\"");
-                }
-            }
-            if (branchFilter.length() > 0) {
+            // Restrict to the default branch of each repository
+            String branchFilter = DefaultBranchFilter.forRepositories(access, searchRepos);
+            if (branchFilter != null) {
                 luceneQuery.append(" AND (").append(branchFilter).append(")");
             }
         }
@@ -132,6 +127,9 @@ public class CommitSearchHandler implements RequestHandler {
             return;
         }
 
+        RequestMetrics metrics = RequestMetrics.of(request);
+        metrics.mark("resolve");
+
         // Execute search - fetch enough results to cover offset + limit
         String finalQuery = luceneQuery.toString();
         log.info("Commit search: user={}, query='{}', repos={}, offset={}",
@@ -139,6 +137,7 @@ public class CommitSearchHandler implements RequestHandler {
 
         int fetchCount = offset + limit;
         List<SearchResult> results = gitblit.search(finalQuery, 1, fetchCount, searchRepos);
+        metrics.mark("lucene");
 
         // Build response
         CommitSearchResponse searchResponse = new CommitSearchResponse();
@@ -193,27 +192,22 @@ public class CommitSearchHandler implements RequestHandler {
     /**
      * Get list of repositories to search.
      */
-    private List<String> getSearchRepositories(IGitblit gitblit, UserModel user, String reposParam) {
-        // Get all accessible repositories with indexing enabled
-        List<String> available = new ArrayList<>();
-        for (RepositoryModel model : gitblit.getRepositoryModels(user)) {
-            if (model.hasCommits && !ArrayUtils.isEmpty(model.indexedBranches)) {
-                available.add(model.name);
-            }
-        }
-
+    private List<String> getSearchRepositories(AccessibleRepositories access, String reposParam) {
         // Filter to requested repositories
-        List<String> requested = Arrays.asList(reposParam.split(","));
         List<String> result = new ArrayList<>();
-        for (String repo : requested) {
-            String trimmed = repo.trim();
-            if (available.contains(trimmed)) {
-                result.add(trimmed);
+        for (String repo : reposParam.split(",")) {
+            RepositoryModel model = access.get(repo.trim());
+            if (model != null && isSearchable(model)) {
+                result.add(model.name);
             }
         }
         return result;
     }
 
+    private static boolean isSearchable(RepositoryModel model) {
+        return model.hasCommits && !ArrayUtils.isEmpty(model.indexedBranches);
+    }
+
     private int parseIntParam(HttpServletRequest request, String name, int defaultValue) {
         String value = request.getParameter(name);
         if (StringUtils.isEmpty(value)) {
@@ -0,0 +1,236 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.handlers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.errors.RevisionSyntaxException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.manager.IGitblit;
+import com.gitblit.models.UserModel;
+import com.gitblit.plugin.mcp.cache.AccessibleRepositories;
+import com.gitblit.plugin.mcp.cache.BlobCache;
+import com.gitblit.plugin.mcp.cache.CachedBlob;
+import com.gitblit.plugin.mcp.cache.RepositoryAccessCache;
+import com.gitblit.plugin.mcp.metrics.RequestMetrics;
+import com.gitblit.plugin.mcp.model.FileBatchRequest;
+import com.gitblit.plugin.mcp.model.FileBatchResponse;
+import com.gitblit.plugin.mcp.util.LineWindow;
+import com.gitblit.plugin.mcp.util.RequestReader;
+import com.gitblit.plugin.mcp.util.ResponseWriter;
+import com.gitblit.utils.StringUtils;
+
+/**
+ * Handler for POST /api/.mcp-internal/file/batch
+ * Reads several files in one request.
+ *
+ * Items are grouped by repository so that each repository is opened once,
+ * with one ObjectReader for all of its items, and each revision resolved
+ * once. Every item gets its own result or error, as /file would return it;
+ * a failure to read one item does not fail the others. Files over 128KB are
+ * streamed a line window at a time, as by /file.
+ */
+public class FileBatchHandler implements RequestHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(FileBatchHandler.class);
+
+    private static final int MAX_ITEMS = 50;
+    private static final int MAX_BODY_SIZE = 256 * 1024;
+
+    @Override
+    public void handle(HttpServletRequest request, HttpServletResponse response,
+                       IGitblit gitblit, UserModel user) throws IOException {
+
+        if (!"POST".equalsIgnoreCase(request.getMethod())) {
+            ResponseWriter.writeError(response, HttpServletResponse.SC_METHOD_NOT_ALLOWED,
+                "Method not allowed. Use POST with a JSON body.");
+            return;
+        }
+
+        FileBatchRequest batch = RequestReader.readJson(request, FileBatchRequest.class, MAX_BODY_SIZE);
+        if (batch == null || batch.items == null) {
+            ResponseWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST,
+                "Request body must be a JSON object with an items array");
+            return;
+        }
+        if (batch.items.isEmpty() || batch.items.size() > MAX_ITEMS) {
+            ResponseWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST,
+                "Batch must contain between 1 and " + MAX_ITEMS + " items");
+            return;
+        }
+
+        // Validate items and group them by repository, preserving first-seen order
+        List<FileBatchResponse.Result> results = new ArrayList<>(batch.items.size());
+        Map<String, List<Integer>> byRepository = new LinkedHashMap<>();
+        AccessibleRepositories access = RepositoryAccessCache.get(gitblit.getSettings()).get(gitblit, user);
+        for (int i = 0; i < batch.items.size(); i++) {
+            FileBatchRequest.Item item = batch.items.get(i);
+            if (item == null) {
+                item = new FileBatchRequest.Item();
+                batch.items.set(i, item);
+            }
+            FileBatchResponse.Result result = new FileBatchResponse.Result(item.repo, item.path);
+            results.add(result);
+
+            if (StringUtils.isEmpty(item.repo)) {
+                fail(result, HttpServletResponse.SC_BAD_REQUEST, "Missing required parameter: repo");
+            } else if (StringUtils.isEmpty(item.path)) {
+                fail(result, HttpServletResponse.SC_BAD_REQUEST, "Missing required parameter: path");
+            } else if (access.get(item.repo) == null) {
+                fail(result, HttpServletResponse.SC_NOT_FOUND, "Repository not found: " + item.repo);
+            } else {
+                List<Integer> group = byRepository.get(item.repo);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    byRepository.put(item.repo, group);
+                }
+                group.add(i);
+            }
+        }
+
+        log.debug("File batch: user={}, items={}, repos={}", user.username, batch.items.size(), byRepository.size());
+
+        RequestMetrics metrics = RequestMetrics.of(request);
+        metrics.mark("resolve");
+
+        BlobCache blobCache = BlobCache.get(gitblit.getSettings());
+        long maxStreamSize = gitblit.getSettings().getFilesize(FileHandler.SETTING_MAX_STREAM_SIZE,
+            FileHandler.DEFAULT_MAX_STREAM_SIZE);
+        for (Map.Entry<String, List<Integer>> entry : byRepository.entrySet()) {
+            readRepository(gitblit, blobCache, maxStreamSize, entry.getKey(), batch.items, entry.getValue(), results);
+        }
+        metrics.mark("load");
+
+        ResponseWriter.writeJson(response, new FileBatchResponse(results));
+    }
+
+    /**
+     * Read all items of one repository.
+     */
+    private void readRepository(IGitblit gitblit, BlobCache blobCache, long maxStreamSize, String repoName,
+                                List<FileBatchRequest.Item> items, List<Integer> indices,
+                                List<FileBatchResponse.Result> results) throws IOException {
+        Repository repository = gitblit.getRepository(repoName);
+        if (repository == null) {
+            for (int index : indices) {
+                fail(results.get(index), HttpServletResponse.SC_NOT_FOUND, "Repository not found: " + repoName);
+            }
+            return;
+        }
+
+        try (ObjectReader reader = repository.newObjectReader();
+             RevWalk revWalk = new RevWalk(reader)) {
+
+            // Resolve every distinct revision once; null marks an unresolvable one
+            Map<String, RevCommit> commits = new HashMap<>();
+            for (int index : indices) {
+                FileBatchRequest.Item item = items.get(index);
+                FileBatchResponse.Result result = results.get(index);
+
+                try {
+                    String revision = StringUtils.isEmpty(item.revision) ? Constants.HEAD : item.revision;
+                    if (!commits.containsKey(revision)) {
+                        commits.put(revision, resolveCommit(repository, revWalk, revision));
+                    }
+                    RevCommit commit = commits.get(revision);
+                    if (commit == null) {
+                        if (!StringUtils.isEmpty(item.revision)) {
+                            fail(result, HttpServletResponse.SC_BAD_REQUEST, "Cannot resolve revision: " + item.revision);
+                        } else {
+                            fail(result, HttpServletResponse.SC_NOT_FOUND, "Repository has no commits");
+                        }
+                        continue;
+                    }
+
+                    readItem(reader, blobCache, maxStreamSize, commit, item, result);
+                } catch (IOException e) {
+                    log.warn("File batch: failed to read {}:{}: {}", repoName, item.path, e.getMessage());
+                    fail(result, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Failed to read file: " + e.getMessage());
+                }
+            }
+        } finally {
+            repository.close();
+        }
+    }
+
+    private RevCommit resolveCommit(Repository repository, RevWalk revWalk, String revision) throws IOException {
+        try {
+            ObjectId id = repository.resolve(revision);
+            return id == null ? null : revWalk.parseCommit(id);
+        } catch (RevisionSyntaxException | MissingObjectException | IncorrectObjectTypeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read one item, with the same checks and errors as /file.
+     */
+    private void readItem(ObjectReader reader, BlobCache blobCache, long maxStreamSize, RevCommit commit,
+                          FileBatchRequest.Item item, FileBatchResponse.Result result) throws IOException {
+        ObjectId blobId = FileHandler.findBlob(reader, commit, item.path);
+        if (blobId == null) {
+            fail(result, HttpServletResponse.SC_NOT_FOUND, "File not found: " + item.path);
+            return;
+        }
+
+        // Validate line parameters
+        int startLine = item.startLine != null ? item.startLine : 1;
+        int endLine = item.endLine != null ? item.endLine : Integer.MAX_VALUE;
+        if (startLine < 1) startLine = 1;
+        if (endLine < startLine) endLine = startLine;
+
+        // Large files are streamed a window at a time instead of cached
+        long size = reader.getObjectSize(blobId, Constants.OBJ_BLOB);
+        if (size > FileHandler.MAX_FILE_SIZE) {
+            if (size > maxStreamSize) {
+                fail(result, HttpServletResponse.SC_BAD_REQUEST, "File exceeds maximum size of " + maxStreamSize + " bytes");
+                return;
+            }
+            LineWindow window = FileHandler.readWindow(reader.open(blobId, Constants.OBJ_BLOB), startLine, endLine);
+            if (window == null) {
+                fail(result, HttpServletResponse.SC_BAD_REQUEST, "Binary file cannot be displayed");
+                return;
+            }
+            result.content = window.content;
+            if (window.nextLine > 0) {
+                result.nextStartLine = window.nextLine;
+            }
+            if (window.lineTruncated) {
+                result.lineTruncated = true;
+            }
+            return;
+        }
+
+        CachedBlob blob = blobCache.load(reader, blobId);
+        if (blob.binary) {
+            fail(result, HttpServletResponse.SC_BAD_REQUEST, "Binary file cannot be displayed");
+            return;
+        }
+
+        result.content = FileHandler.formatLines(blob, startLine, endLine);
+    }
+
+    private static void fail(FileBatchResponse.Result result, int status, String error) {
+        result.status = status;
+        result.error = error;
+    }
+}
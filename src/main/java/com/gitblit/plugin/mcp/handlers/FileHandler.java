@@ -4,17 +4,30 @@
 package com.gitblit.plugin.mcp.handlers;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
 
 import com.gitblit.manager.IGitblit;
 import com.gitblit.models.RepositoryModel;
 import com.gitblit.models.UserModel;
+import com.gitblit.plugin.mcp.cache.BlobCache;
+import com.gitblit.plugin.mcp.cache.CachedBlob;
+import com.gitblit.plugin.mcp.cache.RepositoryAccessCache;
+import com.gitblit.plugin.mcp.metrics.RequestMetrics;
 import com.gitblit.plugin.mcp.model.FileContentResponse;
+import com.gitblit.plugin.mcp.util.ETag;
+import com.gitblit.plugin.mcp.util.LineWindow;
 import com.gitblit.plugin.mcp.util.ResponseWriter;
 import com.gitblit.utils.JGitUtils;
 import com.gitblit.utils.StringUtils;
@@ -25,7 +38,10 @@ import com.gitblit.utils.StringUtils;
  */
 public class FileHandler implements RequestHandler {
 
-    private static final int MAX_FILE_SIZE = 128 * 1024; // 128KB
+    static final int MAX_FILE_SIZE = 128 * 1024; // 128KB
+
+    public static final String SETTING_MAX_STREAM_SIZE = "mcp.file.maxStreamSize";
+    static final long DEFAULT_MAX_STREAM_SIZE = 256L * 1024 * 1024;
 
     @Override
     public void handle(HttpServletRequest request, HttpServletResponse response,
@@ -56,8 +72,8 @@ public class FileHandler implements RequestHandler {
         if (endLine < startLine) endLine = startLine;
 
         // Check repository access
-        RepositoryModel repoModel = gitblit.getRepositoryModel(repoName);
-        if (repoModel == null || !user.canView(repoModel)) {
+        RepositoryModel repoModel = RepositoryAccessCache.get(gitblit.getSettings()).getRepository(gitblit, user, repoName);
+        if (repoModel == null) {
             ResponseWriter.writeError(response, HttpServletResponse.SC_NOT_FOUND,
                 "Repository not found: " + repoName);
             return;
@@ -85,45 +101,51 @@ public class FileHandler implements RequestHandler {
                 return;
             }
 
-            // Get raw bytes first to check size and detect binary
-            byte[] rawContent = JGitUtils.getByteContent(repository, commit.getTree(), path, false);
+            RequestMetrics metrics = RequestMetrics.of(request);
+            metrics.mark("resolve");
 
-            if (rawContent == null) {
-                ResponseWriter.writeError(response, HttpServletResponse.SC_NOT_FOUND,
-                    "File not found: " + path);
+            // Answer conditional requests before walking or loading anything;
+            // the tag is only sent with the file
+            ETag etag = ETag.of("file", request, user).add(commit.getName()).addAccess(user, repoModel);
+            if (etag.checkNotModified(request, response)) {
                 return;
             }
 
-            // Check size limit
-            if (rawContent.length > MAX_FILE_SIZE) {
-                ResponseWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST,
-                    "File exceeds maximum size of 128KB");
-                return;
+            CachedBlob blob;
+            try (ObjectReader reader = repository.newObjectReader()) {
+                // Look up the blob; its decoded content is shared through the blob cache
+                ObjectId blobId = findBlob(reader, commit, path);
+                if (blobId == null) {
+                    ResponseWriter.writeError(response, HttpServletResponse.SC_NOT_FOUND,
+                        "File not found: " + path);
+                    return;
+                }
+
+                // Large files are streamed a window at a time instead of cached
+                long size = reader.getObjectSize(blobId, Constants.OBJ_BLOB);
+                if (size > MAX_FILE_SIZE) {
+                    long maxStreamSize = gitblit.getSettings().getFilesize(SETTING_MAX_STREAM_SIZE, DEFAULT_MAX_STREAM_SIZE);
+                    if (size > maxStreamSize) {
+                        ResponseWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST,
+                            "File exceeds maximum size of " + maxStreamSize + " bytes");
+                        return;
+                    }
+                    streamLines(response, etag, reader.open(blobId, Constants.OBJ_BLOB), startLine, endLine);
+                    return;
+                }
+                blob = BlobCache.get(gitblit.getSettings()).load(reader, blobId);
             }
+            metrics.mark("load");
 
             // Check for binary content
-            if (isBinary(rawContent)) {
+            if (blob.binary) {
                 ResponseWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST,
                     "Binary file cannot be displayed");
                 return;
             }
 
-            // Convert to string
-            String content = new String(rawContent, "UTF-8");
-
-            // Split into lines and apply line range
-            String[] lines = content.split("\n", -1);
-
-            StringBuilder result = new StringBuilder();
-            int actualEndLine = Math.min(endLine, lines.length);
-
-            for (int i = startLine - 1; i < actualEndLine; i++) {
-                if (i >= 0 && i < lines.length) {
-                    result.append((i + 1)).append(": ").append(lines[i]).append("\n");
-                }
-            }
-
-            ResponseWriter.writeJson(response, new FileContentResponse(result.toString()));
+            etag.send(response);
+            ResponseWriter.writeJson(response, new FileContentResponse(formatLines(blob, startLine, endLine)));
 
         } finally {
             if (repository != null) {
@@ -133,17 +155,81 @@ public class FileHandler implements RequestHandler {
     }
 
     /**
-     * Check if content appears to be binary by looking for null bytes.
+     * Serve a line window of a blob above MAX_FILE_SIZE from its stream.
+     * Only the first bytes are inspected for binary content and only the
+     * window is decoded; a window larger than MAX_FILE_SIZE is cut short
+     * and the response says where to continue.
      */
-    private boolean isBinary(byte[] content) {
-        // Check first 8000 bytes for null bytes (common binary indicator)
-        int checkLength = Math.min(content.length, 8000);
-        for (int i = 0; i < checkLength; i++) {
-            if (content[i] == 0) {
-                return true;
+    private void streamLines(HttpServletResponse response, ETag etag, ObjectLoader loader,
+                             int startLine, int endLine) throws IOException {
+        LineWindow window = readWindow(loader, startLine, endLine);
+        if (window == null) {
+            ResponseWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST,
+                "Binary file cannot be displayed");
+            return;
+        }
+
+        FileContentResponse result = new FileContentResponse(window.content);
+        if (window.nextLine > 0) {
+            result.nextStartLine = window.nextLine;
+        }
+        if (window.lineTruncated) {
+            result.lineTruncated = true;
+        }
+        etag.send(response);
+        ResponseWriter.writeJson(response, result);
+    }
+
+    /**
+     * Read a line window of a blob from its stream, with a budget of
+     * MAX_FILE_SIZE. Shared with /file/batch.
+     *
+     * @return the window, or null if the blob is binary
+     */
+    static LineWindow readWindow(ObjectLoader loader, int startLine, int endLine) throws IOException {
+        try (InputStream in = loader.openStream()) {
+            byte[] head = new byte[LineWindow.BINARY_CHECK_SIZE];
+            int headLength = 0;
+            int n;
+            while (headLength < head.length && (n = in.read(head, headLength, head.length - headLength)) > 0) {
+                headLength += n;
+            }
+            if (LineWindow.isBinary(head, headLength)) {
+                return null;
+            }
+            return LineWindow.read(head, headLength, in, startLine, endLine, MAX_FILE_SIZE);
+        }
+    }
+
+    /**
+     * Find the blob at a path in a commit.
+     *
+     * @return the blob id, or null if the path does not name a file
+     */
+    static ObjectId findBlob(ObjectReader reader, RevCommit commit, String path) throws IOException {
+        try (TreeWalk treeWalk = TreeWalk.forPath(reader, path, commit.getTree())) {
+            if (treeWalk == null || treeWalk.isSubtree()
+                    || treeWalk.getFileMode(0) == FileMode.GITLINK || treeWalk.getFileMode(0) == FileMode.MISSING) {
+                return null;
             }
+            return treeWalk.getObjectId(0);
+        }
+    }
+
+    /**
+     * Render a line range with line numbers, decoding only the requested lines.
+     *
+     * @param startLine first line, 1-indexed
+     * @param endLine last line, inclusive; may be past the end of the file
+     */
+    static String formatLines(CachedBlob blob, int startLine, int endLine) {
+        StringBuilder result = new StringBuilder();
+        int actualEndLine = Math.min(endLine, blob.getLineCount());
+
+        for (int i = startLine - 1; i < actualEndLine; i++) {
+            result.append((i + 1)).append(": ").append(blob.getLine(i)).append("\n");
         }
-        return false;
+        return result.toString();
     }
 
     private int parseIntParam(HttpServletRequest request, String name, int defaultValue) {
@@ -5,15 +5,12 @@ package com.gitblit.plugin.mcp.handlers;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevCommit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,10 +19,15 @@ import com.gitblit.manager.IGitblit;
 import com.gitblit.models.RepositoryModel;
 import com.gitblit.models.SearchResult;
 import com.gitblit.models.UserModel;
+import com.gitblit.plugin.mcp.cache.AccessibleRepositories;
+import com.gitblit.plugin.mcp.cache.DefaultBranchFilter;
+import com.gitblit.plugin.mcp.cache.RepositoryAccessCache;
+import com.gitblit.plugin.mcp.metrics.RequestMetrics;
 import com.gitblit.plugin.mcp.model.FileSearchResponse;
+import com.gitblit.plugin.mcp.util.Deadline;
+import com.gitblit.plugin.mcp.util.JsonStream;
 import com.gitblit.plugin.mcp.util.ResponseWriter;
 import com.gitblit.utils.ArrayUtils;
-import com.gitblit.utils.JGitUtils;
 import com.gitblit.utils.StringUtils;
 
 /**
@@ -40,6 +42,14 @@ public class FileSearchHandler implements RequestHandler {
     private static final int MAX_LIMIT = 100;
     private static final int DEFAULT_CONTEXT_LINES = 10;
     private static final int MAX_CONTEXT_LINES = 200;
+    private static final int DEFAULT_MAX_CHUNKS = 5;
+    private static final int MAX_MAX_CHUNKS = 20;
+
+    public static final String SETTING_SCAN_LIMIT = "mcp.search.pathScanLimit";
+    private static final int DEFAULT_SCAN_LIMIT = 1000;
+
+    public static final String SETTING_MAX_CHUNK_BYTES = "mcp.search.maxChunkBytes";
+    private static final int DEFAULT_MAX_CHUNK_BYTES = 256 * 1024;
 
     @Override
     public void handle(HttpServletRequest request, HttpServletResponse response,
@@ -60,6 +70,9 @@ public class FileSearchHandler implements RequestHandler {
         int contextLines = parseIntParam(request, "contextLines", DEFAULT_CONTEXT_LINES);
         if (contextLines > MAX_CONTEXT_LINES) contextLines = MAX_CONTEXT_LINES;
         if (contextLines < 1) contextLines = DEFAULT_CONTEXT_LINES;
+        int maxChunks = parseIntParam(request, "maxChunks", DEFAULT_MAX_CHUNKS);
+        if (maxChunks > MAX_MAX_CHUNKS) maxChunks = MAX_MAX_CHUNKS;
+        if (maxChunks < 1) maxChunks = DEFAULT_MAX_CHUNKS;
 
         // Parse pagination parameters (support 'count' as deprecated alias for 'limit')
         int limit = parseIntParam(request, "limit", -1);
@@ -67,6 +80,7 @@ public class FileSearchHandler implements RequestHandler {
             limit = parseIntParam(request, "count", DEFAULT_LIMIT);  // Backward compatibility
         }
         int offset = parseIntParam(request, "offset", 0);
+        boolean exactCount = "true".equalsIgnoreCase(request.getParameter("exactCount"));
 
         // Check if this is a wildcard-only query (e.g., "*")
         boolean isWildcardQuery = isWildcardOnlyQuery(query);
@@ -97,34 +111,29 @@ public class FileSearchHandler implements RequestHandler {
             luceneQuery.append(" AND (").append(query).append(")");
         }
 
-        // Note: pathPattern is applied as post-filter because Lucene wildcard queries
-        // with leading wildcards (like *.java) cause errors in Gitblit's highlighting code
-
-        // Compile path pattern for post-filtering
+        // Wildcard path queries (like *.java) cause errors in Gitblit's highlighting
+        // code, so pathPattern is matched exactly as a post-filter. Literal directory
+        // and file names of the pattern are required terms, which lets Lucene skip
+        // most non-matching paths.
         Pattern pathRegex = null;
         if (!StringUtils.isEmpty(pathPattern)) {
             pathRegex = globToRegex(pathPattern);
+            for (String term : pathTerms(pathPattern)) {
+                luceneQuery.append(" AND path:").append(term);
+            }
         }
 
         // Determine repositories to search
-        List<String> searchRepos = getSearchRepositories(gitblit, user, reposParam);
+        AccessibleRepositories access = RepositoryAccessCache.get(gitblit.getSettings()).get(gitblit, user);
+        List<String> searchRepos = getSearchRepositories(access, reposParam);
 
         // Add branch filter - use explicit branch or default branches
         if (!StringUtils.isEmpty(branch)) {
             luceneQuery.append(" AND branch:\"").append(branch).append("\"");
         } else {
-            // Build filter using default branch of each repository
-            StringBuilder branchFilter = new StringBuilder();
-            for (String repoName : searchRepos) {
-                RepositoryModel model = gitblit.getRepositoryModel(repoName);
-                if (model != null && !StringUtils.isEmpty(model.HEAD)) {
-                    if (branchFilter.length() > 0) {
-                        branchFilter.append(" OR ");
-                    }
-                    branchFilter.append("branch:\"").append(model.HEAD).append("\"");
-                }
-            }
-            if (branchFilter.length() > 0) {
+            // Restrict to the default branch of each repository
+            String branchFilter = DefaultBranchFilter.forRepositories(access, searchRepos);
+            if (branchFilter != null) {
                 luceneQuery.append(" AND (").append(branchFilter).append(")");
             }
         }
@@ -135,18 +144,14 @@ public class FileSearchHandler implements RequestHandler {
             return;
         }
 
+        RequestMetrics metrics = RequestMetrics.of(request);
+        metrics.mark("resolve");
+
         // Execute search - fetch more results if filtering or using offset
         String finalQuery = luceneQuery.toString();
         log.info("File search: user={}, query='{}', repos={}, pathPattern='{}', offset={}",
                  user.username, finalQuery, searchRepos.size(), pathPattern, offset);
 
-        // Fetch enough results to cover offset + limit, plus extra when filtering
-        int fetchCount = offset + limit;
-        if (pathRegex != null) fetchCount = fetchCount * 4;  // Fetch extra when filtering
-        if (fetchCount > MAX_LIMIT * 4) fetchCount = MAX_LIMIT * 4;
-
-        List<SearchResult> results = gitblit.search(finalQuery, 1, fetchCount, searchRepos);
-
         // Build response
         FileSearchResponse searchResponse = new FileSearchResponse();
         searchResponse.query = finalQuery;
@@ -156,172 +161,220 @@ public class FileSearchHandler implements RequestHandler {
         int filteredCount = 0;
         int skipped = 0;
 
-        // Process each result
-        for (SearchResult sr : results) {
-            // Only include blob results
-            if (sr.type != SearchObjectType.blob) {
-                continue;
+        // Hits whose context chunks are built after the page is selected
+        List<SearchResult> chunkHits = new ArrayList<>();
+        List<FileSearchResponse.FileSearchResult> chunkResults = new ArrayList<>();
+
+        // Without a path filter one page covers offset + limit. With one, pages of
+        // hits are filtered until the page is full and one more match shows that
+        // there are further results, all hits are seen, or the scan budget is used
+        // up. An exact count scans on after the page is full.
+        int pageSize = pathRegex == null ? offset + limit : MAX_LIMIT;
+        int needed = exactCount ? Integer.MAX_VALUE : offset + limit + 1;
+        int scanLimit = Math.max(pageSize, gitblit.getSettings().getInteger(SETTING_SCAN_LIMIT, DEFAULT_SCAN_LIMIT));
+        int totalHits = 0;
+        int scanned = 0;
+        boolean exhausted = false;
+        boolean partial = false;
+        Deadline deadline = Deadline.of(request);
+        for (int page = 1; !exhausted && scanned < scanLimit && filteredCount < needed; page++) {
+            if (page > 1 && deadline.isExpired()) {
+                // Filter no further pages; the totals below become lower bounds
+                partial = true;
+                break;
             }
-
-            // Apply path pattern filter
-            if (pathRegex != null && !pathRegex.matcher(sr.path).matches()) {
-                continue;
+            List<SearchResult> results = gitblit.search(finalQuery, page, pageSize, searchRepos);
+            if (!results.isEmpty()) {
+                totalHits = results.get(0).totalHits;
             }
+            // Gitblit drops duplicate hits from a page, so count hits by page
+            scanned = (int) Math.min((long) page * pageSize, totalHits);
+            exhausted = pathRegex == null || results.isEmpty() || scanned >= totalHits;
+            for (SearchResult sr : results) {
+                // Only include blob results
+                if (sr.type != SearchObjectType.blob) {
+                    continue;
+                }
 
-            filteredCount++;
+                // Apply path pattern filter
+                if (pathRegex != null && !pathRegex.matcher(sr.path).matches()) {
+                    continue;
+                }
 
-            // Skip results before offset
-            if (skipped < offset) {
-                skipped++;
-                continue;
-            }
+                filteredCount++;
 
-            // Stop adding results if we have enough
-            if (searchResponse.results.size() >= limit) {
-                continue;  // Keep counting filtered results for totalCount
-            }
+                // Skip results before offset
+                if (skipped < offset) {
+                    skipped++;
+                    continue;
+                }
 
-            FileSearchResponse.FileSearchResult fileResult = new FileSearchResponse.FileSearchResult();
-            fileResult.repository = sr.repository;
-            fileResult.path = sr.path;
-            fileResult.branch = sr.branch;
-            fileResult.commitId = sr.commitId;
-            fileResult.chunks = new ArrayList<>();
-
-            // Fetch context chunk (skip for wildcard queries to reduce response size)
-            if (!isWildcardQuery) {
-                try {
-                    FileSearchResponse.Chunk chunk = fetchChunk(gitblit, sr, contextLines);
-                    if (chunk != null) {
-                        fileResult.chunks.add(chunk);
-                    }
-                } catch (Exception e) {
-                    log.warn("Failed to fetch context for {}:{}: {}", sr.repository, sr.path, e.getMessage());
+                // Stop adding results if we have enough
+                if (searchResponse.results.size() >= limit) {
+                    continue;  // Keep counting filtered results for totalCount
+                }
+
+                FileSearchResponse.FileSearchResult fileResult = new FileSearchResponse.FileSearchResult();
+                fileResult.repository = sr.repository;
+                fileResult.path = sr.path;
+                fileResult.branch = sr.branch;
+                fileResult.commitId = sr.commitId;
+                fileResult.chunks = new ArrayList<>();
+
+                // Queue context chunk (skip for wildcard queries to reduce response size)
+                if (!isWildcardQuery) {
+                    chunkHits.add(sr);
+                    chunkResults.add(fileResult);
                 }
-            }
 
-            searchResponse.results.add(fileResult);
+                searchResponse.results.add(fileResult);
+            }
         }
+        metrics.mark("lucene");
 
         // Set totalCount and limitHit based on filtering
         if (pathRegex != null) {
-            // When filtering, use the filtered count
+            // When filtering, use the filtered count; a lower bound if hits were left unscanned
             searchResponse.totalCount = filteredCount;
-            searchResponse.limitHit = (offset + searchResponse.results.size()) < filteredCount;
+            searchResponse.totalCountExact = exhausted;
+            searchResponse.limitHit = !exhausted || (offset + searchResponse.results.size()) < filteredCount;
         } else {
             // Without filtering, use Lucene's total
-            searchResponse.totalCount = results.isEmpty() ? 0 : results.get(0).totalHits;
+            searchResponse.totalCount = totalHits;
+            searchResponse.totalCountExact = true;
             searchResponse.limitHit = (offset + searchResponse.results.size()) < searchResponse.totalCount;
         }
 
-        ResponseWriter.writeJson(response, searchResponse);
-    }
-
-    /**
-     * Get list of repositories to search.
-     */
-    private List<String> getSearchRepositories(IGitblit gitblit, UserModel user, String reposParam) {
-        // Get all accessible repositories with indexing enabled
-        List<String> available = new ArrayList<>();
-        for (RepositoryModel model : gitblit.getRepositoryModels(user)) {
-            if (model.hasCommits && !ArrayUtils.isEmpty(model.indexedBranches)) {
-                available.add(model.name);
+        // Fetch context chunks concurrently; results whose chunk misses the deadline are flagged
+        if (!chunkHits.isEmpty()) {
+            ChunkLoader.Result chunks = new ChunkLoader(gitblit, contextLines, MatchLocator.forQuery(query),
+                maxChunks).load(chunkHits, deadline);
+            metrics.mark("chunks");
+            for (int i = 0; i < chunkHits.size(); i++) {
+                if (chunks.chunks.get(i) != null) {
+                    chunkResults.get(i).matches = chunks.matches.get(i);
+                    if (chunks.truncated[i]) {
+                        chunkResults.get(i).chunksTruncated = true;
+                    }
+                    if (chunks.matchesTruncated[i]) {
+                        chunkResults.get(i).matchesTruncated = true;
+                    }
+                } else if (chunks.timedOut[i]) {
+                    chunkResults.get(i).chunkTimedOut = true;
+                    partial |= deadline.isExpired();
+                }
             }
+            int maxBytes = gitblit.getSettings().getFilesize(SETTING_MAX_CHUNK_BYTES, DEFAULT_MAX_CHUNK_BYTES);
+            addChunks(chunkResults, chunks, maxBytes);
         }
 
-        if (StringUtils.isEmpty(reposParam)) {
-            return available;
-        }
-
-        // Filter to requested repositories
-        List<String> requested = Arrays.asList(reposParam.split(","));
-        List<String> result = new ArrayList<>();
-        for (String repo : requested) {
-            String trimmed = repo.trim();
-            if (available.contains(trimmed)) {
-                result.add(trimmed);
+        // Stream the response (see FileSearchResponse). Nothing is sent until
+        // the chunks are in, so a failure while fetching them is still
+        // answered with an error.
+        try (JsonStream json = ResponseWriter.startJson(response)) {
+            json.beginObject()
+                .field("query", searchResponse.query)
+                .field("totalCount", searchResponse.totalCount)
+                .field("totalCountExact", searchResponse.totalCountExact)
+                .field("limitHit", searchResponse.limitHit);
+
+            json.beginArray("results");
+            for (FileSearchResponse.FileSearchResult fileResult : searchResponse.results) {
+                json.element(fileResult);
             }
+            json.endArray();
+            if (partial) {
+                json.field("partial", true);
+            }
+            json.endObject();
         }
-        return result;
     }
 
     /**
-     * Fetch a chunk of context around the match.
+     * Attach chunks to the results within a byte budget for the whole
+     * response. Every result gets its first chunk before any result gets a
+     * second one; results that lose chunks to the budget are flagged.
      */
-    private FileSearchResponse.Chunk fetchChunk(IGitblit gitblit, SearchResult sr, int contextLines) {
-        Repository repository = null;
-        try {
-            repository = gitblit.getRepository(sr.repository);
-            if (repository == null) {
-                return null;
-            }
-
-            RevCommit commit = JGitUtils.getCommit(repository, sr.commitId);
-            if (commit == null) {
-                return null;
-            }
-
-            String content = JGitUtils.getStringContent(repository, commit.getTree(), sr.path);
-            if (content == null) {
-                return null;
-            }
-
-            String[] lines = content.split("\n", -1);
-
-            // Find the match line using the fragment
-            int matchLine = findMatchLine(lines, sr.fragment);
-
-            // Calculate context range
-            int halfContext = contextLines / 2;
-            int startLine = Math.max(0, matchLine - halfContext);
-            int endLine = Math.min(lines.length, matchLine + halfContext + 1);
-
-            // Build chunk content with line numbers
-            StringBuilder chunkContent = new StringBuilder();
-            for (int i = startLine; i < endLine; i++) {
-                chunkContent.append(i + 1).append(": ").append(lines[i]).append("\n");
+    private static void addChunks(List<FileSearchResponse.FileSearchResult> results, ChunkLoader.Result chunks,
+                                  long maxBytes) {
+        long bytes = 0;
+        for (int round = 0; round < MAX_MAX_CHUNKS; round++) {
+            boolean more = false;
+            for (int i = 0; i < results.size(); i++) {
+                List<FileSearchResponse.Chunk> fileChunks = chunks.chunks.get(i);
+                if (fileChunks == null || round >= fileChunks.size()) {
+                    continue;
+                }
+                FileSearchResponse.FileSearchResult result = results.get(i);
+                if (result.chunks.size() < round) {
+                    // An earlier chunk of this file did not fit
+                    continue;
+                }
+                FileSearchResponse.Chunk chunk = fileChunks.get(round);
+                long chunkBytes = utf8Length(chunk.content);
+                if (bytes + chunkBytes > maxBytes) {
+                    result.chunksTruncated = true;
+                    continue;
+                }
+                bytes += chunkBytes;
+                result.chunks.add(chunk);
+                more = true;
             }
-
-            return new FileSearchResponse.Chunk(startLine + 1, endLine, chunkContent.toString());
-
-        } finally {
-            if (repository != null) {
-                repository.close();
+            if (!more) {
+                break;
             }
         }
     }
 
     /**
-     * Find the line number containing the match.
+     * Number of bytes of a string in UTF-8, the encoding of the response.
      */
-    private int findMatchLine(String[] lines, String fragment) {
-        if (fragment == null || fragment.isEmpty()) {
-            return 0;
+    private static long utf8Length(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
         }
+        return length;
+    }
 
-        // Clean up fragment - remove HTML highlighting tags
-        String cleanFragment = fragment.replaceAll("<[^>]+>", "").trim();
-
-        // Try exact match first
-        for (int i = 0; i < lines.length; i++) {
-            if (lines[i].contains(cleanFragment)) {
-                return i;
+    /**
+     * Get list of repositories to search.
+     */
+    private List<String> getSearchRepositories(AccessibleRepositories access, String reposParam) {
+        List<String> result = new ArrayList<>();
+        if (StringUtils.isEmpty(reposParam)) {
+            // All accessible repositories with indexing enabled
+            for (RepositoryModel model : access.getModels()) {
+                if (isSearchable(model)) {
+                    result.add(model.name);
+                }
             }
+            return result;
         }
 
-        // Try word matching
-        String[] words = cleanFragment.split("\\s+");
-        for (String word : words) {
-            if (word.length() > 3) {
-                for (int i = 0; i < lines.length; i++) {
-                    if (lines[i].toLowerCase().contains(word.toLowerCase())) {
-                        return i;
-                    }
-                }
+        // Filter to requested repositories
+        for (String repo : reposParam.split(",")) {
+            RepositoryModel model = access.get(repo.trim());
+            if (model != null && isSearchable(model)) {
+                result.add(model.name);
             }
         }
+        return result;
+    }
 
-        return 0;
+    private static boolean isSearchable(RepositoryModel model) {
+        return model.hasCommits && !ArrayUtils.isEmpty(model.indexedBranches);
     }
 
     private int parseIntParam(HttpServletRequest request, String name, int defaultValue) {
@@ -336,6 +389,33 @@ public class FileSearchHandler implements RequestHandler {
         }
     }
 
+    /**
+     * Extract index terms that every path matching the glob contains.
+     *
+     * Gitblit indexes paths with the standard analyzer, which splits at '/'.
+     * A glob segment that is bounded by '/' or the ends of the glob and
+     * consists of letters and digits only therefore appears as a whole
+     * lowercase term in every matching path.
+     */
+    static List<String> pathTerms(String glob) {
+        List<String> terms = new ArrayList<>();
+        for (String segment : glob.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            boolean alphanumeric = true;
+            for (int i = 0; i < segment.length() && alphanumeric; i++) {
+                char c = segment.charAt(i);
+                alphanumeric = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+            }
+            String term = segment.toLowerCase();
+            if (alphanumeric && !MatchLocator.STOP_WORDS.contains(term) && !terms.contains(term)) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
     /**
      * Convert a glob pattern to a regex Pattern.
      * Supports * (any chars) and ? (single char) wildcards.
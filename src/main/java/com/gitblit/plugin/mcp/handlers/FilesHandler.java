@@ -21,7 +21,10 @@ import com.gitblit.manager.IGitblit;
 import com.gitblit.models.PathModel;
 import com.gitblit.models.RepositoryModel;
 import com.gitblit.models.UserModel;
+import com.gitblit.plugin.mcp.cache.RepositoryAccessCache;
+import com.gitblit.plugin.mcp.metrics.RequestMetrics;
 import com.gitblit.plugin.mcp.model.FileListResponse;
+import com.gitblit.plugin.mcp.util.ETag;
 import com.gitblit.plugin.mcp.util.ResponseWriter;
 import com.gitblit.utils.JGitUtils;
 import com.gitblit.utils.StringUtils;
@@ -69,8 +72,8 @@ public class FilesHandler implements RequestHandler {
         if (offset < 0) offset = 0;
 
         // Check repository access
-        RepositoryModel repoModel = gitblit.getRepositoryModel(repoName);
-        if (repoModel == null || !user.canView(repoModel)) {
+        RepositoryModel repoModel = RepositoryAccessCache.get(gitblit.getSettings()).getRepository(gitblit, user, repoName);
+        if (repoModel == null) {
             ResponseWriter.writeError(response, HttpServletResponse.SC_NOT_FOUND,
                 "Repository not found: " + repoName);
             return;
@@ -98,8 +101,19 @@ public class FilesHandler implements RequestHandler {
                 return;
             }
 
+            RequestMetrics metrics = RequestMetrics.of(request);
+            metrics.mark("resolve");
+
+            // Answer conditional requests before walking or loading anything;
+            // the tag is only sent with the listing
+            ETag etag = ETag.of("files", request, user).add(commit.getName()).addAccess(user, repoModel);
+            if (etag.checkNotModified(request, response)) {
+                return;
+            }
+
             // Get files at path
             List<PathModel> pathModels = JGitUtils.getFilesInPath(repository, path, commit);
+            metrics.mark("walk");
 
             if (pathModels == null) {
                 ResponseWriter.writeError(response, HttpServletResponse.SC_NOT_FOUND,
@@ -161,6 +175,7 @@ public class FilesHandler implements RequestHandler {
             result.totalCount = totalCount;
             result.limitHit = endIndex < totalCount;
 
+            etag.send(response);
             ResponseWriter.writeJson(response, result);
 
         } finally {
@@ -8,12 +8,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.PatternSyntaxException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.RevisionSyntaxException;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
@@ -23,11 +25,23 @@ import org.eclipse.jgit.treewalk.TreeWalk;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.gitblit.IStoredSettings;
 import com.gitblit.manager.IGitblit;
 import com.gitblit.models.RepositoryModel;
 import com.gitblit.models.UserModel;
+import com.gitblit.plugin.mcp.cache.AccessibleRepositories;
+import com.gitblit.plugin.mcp.cache.PathIndexCache;
+import com.gitblit.plugin.mcp.cache.RepositoryAccessCache;
+import com.gitblit.plugin.mcp.metrics.RequestMetrics;
 import com.gitblit.plugin.mcp.model.FindFilesResponse;
+import com.gitblit.plugin.mcp.util.Cursor;
+import com.gitblit.plugin.mcp.util.Deadline;
+import com.gitblit.plugin.mcp.util.ETag;
+import com.gitblit.plugin.mcp.util.GlobTreeFilter;
+import com.gitblit.plugin.mcp.util.JsonStream;
+import com.gitblit.plugin.mcp.util.PathGlob;
 import com.gitblit.plugin.mcp.util.ResponseWriter;
+import com.gitblit.plugin.mcp.util.WorkerPool;
 import com.gitblit.utils.StringUtils;
 
 /**
@@ -41,6 +55,13 @@ public class FindFilesHandler implements RequestHandler {
     private static final int DEFAULT_LIMIT = 50;
     private static final int MAX_LIMIT = 200;
 
+    public static final String SETTING_THREADS = "mcp.find.threads";
+    public static final String SETTING_MAX_PARALLELISM = "mcp.find.maxParallelism";
+    private static final int DEFAULT_MAX_PARALLELISM = 4;
+
+    /** Sorted paths scanned between deadline checks, minus one */
+    private static final int DEADLINE_CHECK_MASK = 1023;
+
     @Override
     public void handle(HttpServletRequest request, HttpServletResponse response,
                        IGitblit gitblit, UserModel user) throws IOException {
@@ -54,9 +75,9 @@ public class FindFilesHandler implements RequestHandler {
         }
 
         // Parse and validate glob pattern
-        Pattern matcher;
+        PathGlob matcher;
         try {
-            matcher = globToRegex(pathPattern);
+            matcher = PathGlob.compile(pathPattern);
         } catch (PatternSyntaxException e) {
             ResponseWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST,
                 "Invalid glob pattern: " + e.getMessage());
@@ -66,6 +87,8 @@ public class FindFilesHandler implements RequestHandler {
         // Parse optional parameters
         String reposParam = request.getParameter("repos");
         String revisionParam = request.getParameter("revision");
+        String after = request.getParameter("after");
+        boolean exactCount = !"false".equalsIgnoreCase(request.getParameter("exactCount"));
         int limit = parseIntParam(request, "limit", DEFAULT_LIMIT);
         int offset = parseIntParam(request, "offset", 0);
 
@@ -74,6 +97,18 @@ public class FindFilesHandler implements RequestHandler {
         if (limit > MAX_LIMIT) limit = MAX_LIMIT;
         if (offset < 0) offset = 0;
 
+        // Decode the cursor (repository, tree id, last path); it replaces offset
+        String[] cursor = null;
+        if (!StringUtils.isEmpty(after)) {
+            cursor = Cursor.decode(after, 3);
+            if (cursor == null) {
+                ResponseWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST,
+                    "Invalid cursor: " + after);
+                return;
+            }
+            offset = 0;
+        }
+
         // Get accessible repositories
         List<String> repos = getAccessibleRepositories(gitblit, user, reposParam);
 
@@ -86,112 +121,398 @@ public class FindFilesHandler implements RequestHandler {
         // Sort repositories alphabetically for predictable results
         Collections.sort(repos);
 
-        log.info("Find files: user={}, pattern='{}', repos={}, limit={}, offset={}",
-                 user.username, pathPattern, repos.size(), limit, offset);
+        // Resume at the cursor repository
+        if (cursor != null) {
+            int start = 0;
+            while (start < repos.size() && repos.get(start).compareTo(cursor[0]) < 0) {
+                start++;
+            }
+            repos = repos.subList(start, repos.size());
+        }
+
+        log.info("Find files: user={}, pattern='{}', repos={}, limit={}, offset={}, after={}",
+                 user.username, pathPattern, repos.size(), limit, offset, after);
+
+        // Resolve every revision up front, concurrently; together with the repository
+        // list (the user's access) the commit ids determine the whole response. This
+        // only reads refs, so repositories are closed again right away and the walk
+        // below opens just the ones it gets to.
+        Deadline deadline = Deadline.of(request);
+        ObjectId[] commitIds = resolveCommits(gitblit, repos, revisionParam, deadline);
+        RequestMetrics metrics = RequestMetrics.of(request);
+        metrics.mark("resolve");
+        ETag etag = ETag.of("find", request, user);
+        for (int i = 0; i < repos.size(); i++) {
+            etag.add(repos.get(i)).add(commitIds[i] != null ? commitIds[i].getName() : null);
+        }
+        // The tag goes out only with a complete response; once the deadline
+        // passed, some revisions may not have been resolved
+        if (!deadline.isExpired() && etag.checkNotModified(request, response)) {
+            return;
+        }
 
-        // Build response
-        FindFilesResponse result = new FindFilesResponse();
-        result.pattern = pathPattern;
-        result.results = new ArrayList<>();
         int totalMatched = 0;  // Total matches found (for totalCount)
         int skipped = 0;       // Matches skipped due to offset
         int collected = 0;     // Matches collected for result
+        boolean countExact = true;
+        RepoMatches lastRepo = null;
+        String lastPath = null;
+        boolean partial = false;
+
+        // Without an exact count, one match beyond the page is enough to know
+        // that more are available
+        int needed = exactCount ? 0 : offset + limit + 1;
+
+        // Walk repositories concurrently. Each repository gets its own slot so
+        // the merge below still sees them in alphabetical order.
+        RepoMatches[] repoMatches = findInRepositories(gitblit, repos, commitIds, revisionParam,
+            matcher, cursor, needed, deadline);
+        metrics.mark("walk");
+        for (RepoMatches rm : repoMatches) {
+            partial |= rm != null && rm.partial;
+        }
+        if (partial) {
+            log.info("Find files: deadline passed, returning partial results");
+        } else {
+            etag.send(response);
+        }
 
-        // Process each repository
-        for (String repoName : repos) {
-            Repository repository = null;
-            RevWalk revWalk = null;
-            TreeWalk treeWalk = null;
+        // Stream the response (see FindFilesResponse); totals follow the results
+        try (JsonStream json = ResponseWriter.startJson(response)) {
+            json.beginObject()
+                .field("pattern", pathPattern)
+                .beginArray("results");
 
-            try {
-                repository = gitblit.getRepository(repoName);
-                if (repository == null) continue;
+            for (RepoMatches rm : repoMatches) {
+                if (rm == null || rm.truncated) {
+                    // Not walked, or walk stopped early
+                    countExact = false;
+                }
+                if (rm == null) continue;
 
-                // Resolve revision
-                String revision = revisionParam != null ? revisionParam : "HEAD";
-                ObjectId commitId = repository.resolve(revision);
-                if (commitId == null) continue;
+                List<String> matches = new ArrayList<>();
+                for (String path : rm.paths) {
+                    totalMatched++;
+
+                    // Skip results before offset
+                    if (skipped < offset) {
+                        skipped++;
+                        lastRepo = rm;
+                        lastPath = path;
+                        continue;
+                    }
 
-                revWalk = new RevWalk(repository);
-                RevCommit commit = revWalk.parseCommit(commitId);
+                    // Only collect up to limit results
+                    if (collected < limit) {
+                        matches.add(path);
+                        collected++;
+                        lastRepo = rm;
+                        lastPath = path;
+                    }
+                    // Continue to count totalMatched even after limit
+                }
 
-                // Resolve the reference name for display
-                String resolvedRef = resolveRef(repository, revision, commitId);
+                if (!matches.isEmpty()) {
+                    json.element(new FindFilesResponse.FindFilesResult(rm.repository, rm.revision, matches));
+                }
 
-                List<String> matches = new ArrayList<>();
+                // Matches of later repositories would leave a gap before the cursor
+                if (rm.partial) {
+                    break;
+                }
+            }
+
+            boolean limitHit = (offset + collected) < totalMatched;
+            json.endArray()
+                .field("totalCount", totalMatched)
+                .field("totalCountExact", countExact)
+                .field("limitHit", limitHit);
+            if (cursor != null && isStale(cursor, repoMatches)) {
+                json.field("cursorStale", true);
+            }
+            if ((limitHit || partial) && lastRepo != null) {
+                json.field("nextCursor", Cursor.encode(lastRepo.repository, lastRepo.treeId, lastPath));
+            } else if (partial) {
+                json.field("nextCursor", resumeCursor(after, cursor, repoMatches));
+            }
+            if (partial) {
+                json.field("partial", true);
+            }
+            json.endObject();
+        }
+    }
+
+    /**
+     * Find matching paths in each repository using the shared worker pool.
+     *
+     * @param commitIds resolved revision per repository, null where missing
+     * @param cursor decoded cursor to resume from, or null
+     * @param needed number of matches after which the walk may stop, or 0 to walk everything
+     * @param deadline once passed, repositories are no longer walked
+     * @return matches per repository; null for repositories that were not walked
+     */
+    private RepoMatches[] findInRepositories(final IGitblit gitblit, final List<String> repos,
+                                             final ObjectId[] commitIds, final String revisionParam,
+                                             final PathGlob matcher, final String[] cursor,
+                                             final int needed, final Deadline deadline) throws IOException {
+        IStoredSettings settings = gitblit.getSettings();
+        final PathIndexCache pathIndex = PathIndexCache.get(settings);
+        WorkerPool pool = WorkerPool.get("find",
+            settings.getInteger(SETTING_THREADS, Runtime.getRuntime().availableProcessors()));
+        int parallelism = settings.getInteger(SETTING_MAX_PARALLELISM, DEFAULT_MAX_PARALLELISM);
+
+        final RepoMatches[] repoMatches = new RepoMatches[repos.size()];
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+        final int[] prefix = new int[2];  // repositories walked in order, and their matches
+
+        pool.forEach(repos.size(), parallelism, new WorkerPool.IndexedTask() {
+            @Override
+            public boolean run(int index) {
+                String repoName = repos.get(index);
+                String resumeAfter = cursor != null && cursor[0].equals(repoName) ? cursor[2] : null;
+                if (deadline.isExpired()) {
+                    RepoMatches skipped = new RepoMatches();
+                    skipped.repository = repoName;
+                    skipped.truncated = true;
+                    skipped.partial = true;
+                    repoMatches[index] = skipped;
+                    return false;
+                }
+                Repository repository = commitIds[index] != null ? gitblit.getRepository(repoName) : null;
+                try {
+                    repoMatches[index] = findInRepository(repository, repoName, commitIds[index],
+                        revisionParam, matcher, pathIndex, resumeAfter, needed, deadline);
+                } catch (IOException e) {
+                    failure.compareAndSet(null, e);
+                    return false;
+                } finally {
+                    if (repository != null) {
+                        repository.close();
+                    }
+                }
+                if (repoMatches[index].partial) {
+                    return false;
+                }
+                if (needed <= 0) {
+                    return true;
+                }
+
+                // Stop once the repositories walked so far, in order, have enough matches
+                synchronized (prefix) {
+                    while (prefix[0] < repoMatches.length && repoMatches[prefix[0]] != null) {
+                        prefix[1] += repoMatches[prefix[0]].paths.size();
+                        prefix[0]++;
+                    }
+                    return prefix[1] < needed;
+                }
+            }
+        });
 
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return repoMatches;
+    }
+
+    /**
+     * Find matching paths in a single repository.
+     *
+     * @param commitId resolved revision, or null if it does not exist
+     * @param resumeAfter only return paths sorting after this one, or null
+     * @param maxMatches stop after this many matches, or 0 for no limit
+     * @param deadline once passed, the walk stops and the matches so far are flagged partial
+     * @return the matches; empty if the repository or revision does not exist
+     */
+    private RepoMatches findInRepository(Repository repository, String repoName, ObjectId commitId,
+                                         String revisionParam, PathGlob matcher, PathIndexCache pathIndex,
+                                         String resumeAfter, int maxMatches, Deadline deadline)
+            throws IOException {
+        RevWalk revWalk = null;
+        TreeWalk treeWalk = null;
+
+        RepoMatches result = new RepoMatches();
+        result.repository = repoName;
+
+        if (repository == null || commitId == null) return result;
+
+        try {
+            String revision = revisionParam != null ? revisionParam : "HEAD";
+
+            revWalk = new RevWalk(repository);
+            RevCommit commit = revWalk.parseCommit(commitId);
+            result.treeId = commit.getTree().getName();
+
+            // Resolve the reference name for display
+            result.revision = resolveRef(repository, revision, commitId);
+
+            // Paths come back sorted, so matches are collected in order
+            String[] paths = pathIndex.getPaths(repoName, repository, commit.getTree(), deadline);
+            if (paths != null) {
+                int[] range = matcher.candidateRange(paths);
+                int start = range[0];
+                if (resumeAfter != null) {
+                    start = Math.max(start, upperBound(paths, resumeAfter));
+                }
+                for (int i = start; i < range[1]; i++) {
+                    if ((i & DEADLINE_CHECK_MASK) == 0 && deadline.isExpired()) {
+                        result.truncated = true;
+                        result.partial = true;
+                        break;
+                    }
+                    if (matcher.matches(paths[i])) {
+                        if (maxMatches > 0 && result.paths.size() >= maxMatches) {
+                            result.truncated = true;
+                            break;
+                        }
+                        result.paths.add(paths[i]);
+                    }
+                }
+            } else {
+                // Tree too large to cache: walk it, skipping subtrees that cannot match.
+                // The filter ends the walk at the deadline; tree order is path order,
+                // so the paths walked so far are still a prefix of the matches.
                 treeWalk = new TreeWalk(repository);
                 treeWalk.addTree(commit.getTree());
                 treeWalk.setRecursive(true);
-
+                treeWalk.setFilter(new GlobTreeFilter(matcher, deadline));
                 while (treeWalk.next()) {
                     String path = treeWalk.getPathString();
-                    if (matcher.matcher(path).matches()) {
-                        totalMatched++;
-
-                        // Skip results before offset
-                        if (skipped < offset) {
-                            skipped++;
-                            continue;
-                        }
-
-                        // Only collect up to limit results
-                        if (collected < limit) {
-                            matches.add(path);
-                            collected++;
-                        }
-                        // Continue to count totalMatched even after limit
+                    if (resumeAfter == null || path.compareTo(resumeAfter) > 0) {
+                        result.paths.add(path);
                     }
                 }
-
-                if (!matches.isEmpty()) {
-                    // Sort file paths within each repository
-                    Collections.sort(matches);
-                    result.results.add(new FindFilesResponse.FindFilesResult(repoName, resolvedRef, matches));
+                if (deadline.isExpired()) {
+                    result.truncated = true;
+                    result.partial = true;
                 }
+                Collections.sort(result.paths);
+                if (maxMatches > 0 && result.paths.size() > maxMatches) {
+                    result.paths.subList(maxMatches, result.paths.size()).clear();
+                    result.truncated = true;
+                }
+            }
+            return result;
 
-            } finally {
-                if (treeWalk != null) {
-                    treeWalk.close();
+        } finally {
+            if (treeWalk != null) {
+                treeWalk.close();
+            }
+            if (revWalk != null) {
+                revWalk.close();
+            }
+        }
+    }
+
+    /**
+     * Resolve the revision in each repository, using the shared worker pool.
+     * Each repository is open only while its refs are read.
+     *
+     * @param deadline once passed, no more repositories are opened
+     * @return commit ids aligned with the repositories; null where the
+     *         repository or revision does not exist, or the deadline passed
+     */
+    private ObjectId[] resolveCommits(final IGitblit gitblit, final List<String> repos,
+                                      String revisionParam, final Deadline deadline)
+            throws IOException {
+        IStoredSettings settings = gitblit.getSettings();
+        WorkerPool pool = WorkerPool.get("find",
+            settings.getInteger(SETTING_THREADS, Runtime.getRuntime().availableProcessors()));
+        int parallelism = settings.getInteger(SETTING_MAX_PARALLELISM, DEFAULT_MAX_PARALLELISM);
+
+        final String revision = revisionParam != null ? revisionParam : "HEAD";
+        final ObjectId[] commitIds = new ObjectId[repos.size()];
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+        pool.forEach(repos.size(), parallelism, new WorkerPool.IndexedTask() {
+            @Override
+            public boolean run(int index) {
+                if (deadline.isExpired()) {
+                    return false;
                 }
-                if (revWalk != null) {
-                    revWalk.close();
+                Repository repository = gitblit.getRepository(repos.get(index));
+                if (repository == null) {
+                    return true;
                 }
-                if (repository != null) {
+                try {
+                    commitIds[index] = repository.resolve(revision + "^{commit}");
+                } catch (RevisionSyntaxException | IncorrectObjectTypeException e) {
+                    // Not a commit in this repository
+                } catch (IOException e) {
+                    failure.compareAndSet(null, e);
+                    return false;
+                } finally {
                     repository.close();
                 }
+                return true;
             }
+        });
+
+        if (failure.get() != null) {
+            throw failure.get();
         }
+        return commitIds;
+    }
 
-        result.totalCount = totalMatched;
-        result.limitHit = (offset + collected) < totalMatched;
+    /**
+     * Cursor for a partial response that returned no path: resume where the
+     * walk stopped, which is the incoming cursor if it stopped in the cursor's
+     * repository, and otherwise the start of the first repository not fully
+     * walked. Its tree id is left empty when the repository was not walked.
+     */
+    private static String resumeCursor(String after, String[] cursor, RepoMatches[] repoMatches) {
+        for (RepoMatches rm : repoMatches) {
+            if (rm == null || !rm.partial) continue;
+            if (cursor != null && rm.repository.equals(cursor[0])) {
+                return after;
+            }
+            return Cursor.encode(rm.repository, rm.treeId != null ? rm.treeId : "", "");
+        }
+        return after;
+    }
 
-        ResponseWriter.writeJson(response, result);
+    /**
+     * Whether the tree of the cursor's repository has changed since the
+     * cursor was issued. Paths are still resumed by name, but pages before
+     * and after the change may miss or repeat files.
+     */
+    private static boolean isStale(String[] cursor, RepoMatches[] repoMatches) {
+        for (RepoMatches rm : repoMatches) {
+            if (rm != null && rm.repository.equals(cursor[0])) {
+                return rm.treeId != null && !cursor[1].isEmpty() && !rm.treeId.equals(cursor[1]);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Index of the first path sorting strictly after the given one.
+     */
+    private static int upperBound(String[] sortedPaths, String path) {
+        int index = Arrays.binarySearch(sortedPaths, path);
+        return index >= 0 ? index + 1 : -(index + 1);
     }
 
     /**
      * Get list of accessible repositories.
      */
     private List<String> getAccessibleRepositories(IGitblit gitblit, UserModel user, String reposParam) {
-        // Get all accessible repositories
-        List<String> available = new ArrayList<>();
-        for (RepositoryModel model : gitblit.getRepositoryModels(user)) {
-            if (model.hasCommits) {
-                available.add(model.name);
-            }
-        }
+        AccessibleRepositories access = RepositoryAccessCache.get(gitblit.getSettings()).get(gitblit, user);
 
+        List<String> result = new ArrayList<>();
         if (StringUtils.isEmpty(reposParam)) {
-            return available;
+            // All accessible repositories
+            for (RepositoryModel model : access.getModels()) {
+                if (model.hasCommits) {
+                    result.add(model.name);
+                }
+            }
+            return result;
         }
 
         // Filter to requested repositories
-        List<String> requested = Arrays.asList(reposParam.split(","));
-        List<String> result = new ArrayList<>();
-        for (String repo : requested) {
-            String trimmed = repo.trim();
-            if (available.contains(trimmed)) {
-                result.add(trimmed);
+        for (String repo : reposParam.split(",")) {
+            RepositoryModel model = access.get(repo.trim());
+            if (model != null && model.hasCommits) {
+                result.add(model.name);
             }
         }
         return result;
@@ -220,56 +541,6 @@ public class FindFilesHandler implements RequestHandler {
         return commitId.getName();
     }
 
-    /**
-     * Convert a glob pattern to a regex Pattern.
-     * Supports:
-     *   * - matches any characters except /
-     *   ** - matches any characters including /
-     *   ? - matches a single character except /
-     */
-    private Pattern globToRegex(String glob) throws PatternSyntaxException {
-        StringBuilder regex = new StringBuilder();
-        regex.append("^");
-
-        int i = 0;
-        while (i < glob.length()) {
-            char c = glob.charAt(i);
-
-            if (c == '*') {
-                // Check for **
-                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
-                    // ** matches anything including /
-                    regex.append(".*");
-                    i += 2;
-                    // Skip trailing / after ** (e.g., **/ matches any path prefix)
-                    if (i < glob.length() && glob.charAt(i) == '/') {
-                        i++;
-                    }
-                } else {
-                    // * matches anything except /
-                    regex.append("[^/]*");
-                    i++;
-                }
-            } else if (c == '?') {
-                // ? matches single char except /
-                regex.append("[^/]");
-                i++;
-            } else if (c == '.' || c == '(' || c == ')' || c == '[' || c == ']' ||
-                       c == '{' || c == '}' || c == '\\' || c == '^' || c == '$' ||
-                       c == '|' || c == '+') {
-                // Escape regex special chars
-                regex.append("\\").append(c);
-                i++;
-            } else {
-                regex.append(c);
-                i++;
-            }
-        }
-
-        regex.append("$");
-        return Pattern.compile(regex.toString());
-    }
-
     private int parseIntParam(HttpServletRequest request, String name, int defaultValue) {
         String value = request.getParameter(name);
         if (StringUtils.isEmpty(value)) {
@@ -281,4 +552,16 @@ public class FindFilesHandler implements RequestHandler {
             return defaultValue;
         }
     }
+
+    /**
+     * Matching paths of one repository, in sorted order.
+     */
+    private static class RepoMatches {
+        String repository;
+        String revision;
+        String treeId;
+        boolean truncated;
+        boolean partial;     // stopped by the deadline
+        final List<String> paths = new ArrayList<>();
+    }
 }
@@ -0,0 +1,319 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.handlers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.gitblit.plugin.mcp.cache.CachedBlob;
+import com.gitblit.plugin.mcp.model.FileSearchResponse;
+
+/**
+ * Finds the exact positions of the terms of a Lucene query in file content.
+ *
+ * Gitblit indexes blob content with Lucene's StandardAnalyzer. This class
+ * tokenizes the query and the content the same way - word characters,
+ * joined across single '.', '\'' and ':' between letters or digits,
+ * lower-cased, English stop words dropped - so that a term matches where
+ * Lucene matched it. Only content terms that are not negated count; field
+ * queries such as path:x and range queries are ignored. Phrases contribute
+ * their words as separate terms.
+ */
+class MatchLocator {
+
+    /** Stop words of Lucene's StandardAnalyzer; they are not indexed */
+    static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+        "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into", "is", "it",
+        "no", "not", "of", "on", "or", "such", "that", "the", "their", "then", "there", "these",
+        "they", "this", "to", "was", "will", "with"));
+
+    private static final String CONTENT_FIELD = "content";
+
+    private final Set<String> terms = new HashSet<>();
+    private final List<Pattern> wildcards = new ArrayList<>();
+
+    /**
+     * Extract the content terms of a query in Lucene's classic syntax.
+     */
+    static MatchLocator forQuery(String query) {
+        MatchLocator locator = new MatchLocator();
+        if (query != null) {
+            locator.parse(query);
+        }
+        return locator;
+    }
+
+    /**
+     * Whether the query has any term that can be located.
+     */
+    boolean isEmpty() {
+        return terms.isEmpty() && wildcards.isEmpty();
+    }
+
+    /**
+     * Locate the terms in the lines of a file, in a single pass. Lines are
+     * decoded one at a time, so lines after the last match are not decoded.
+     *
+     * @param max stop after this many matches
+     * @return matches in line and column order
+     */
+    List<FileSearchResponse.Match> locate(CachedBlob blob, int max) {
+        if (isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<FileSearchResponse.Match> matches = new ArrayList<>();
+        int lineCount = blob.getLineCount();
+        for (int i = 0; i < lineCount && matches.size() < max; i++) {
+            String line = blob.getLine(i);
+            int pos = 0;
+            int[] token = new int[2];
+            while (matches.size() < max && nextToken(line, pos, token)) {
+                String word = line.substring(token[0], token[1]).toLowerCase(Locale.ROOT);
+                if (matches(word)) {
+                    matches.add(new FileSearchResponse.Match(i + 1, token[0], token[1]));
+                }
+                pos = token[1];
+            }
+        }
+        return matches;
+    }
+
+    private boolean matches(String word) {
+        if (terms.contains(word)) {
+            return true;
+        }
+        for (Pattern wildcard : wildcards) {
+            if (wildcard.matcher(word).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walk the query clause by clause, collecting terms of positive clauses
+     * on the content field.
+     */
+    private void parse(String query) {
+        // Negation and field of each open group
+        List<boolean[]> groups = new ArrayList<>();
+        boolean negated = false;
+        String field = null;
+
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (c == '-' || c == '!') {
+                negated = true;
+                i++;
+                continue;
+            }
+            if (c == '+') {
+                i++;
+                continue;
+            }
+            if (c == '(') {
+                boolean outerNegated = !groups.isEmpty() && groups.get(groups.size() - 1)[0];
+                boolean outerOther = !groups.isEmpty() && groups.get(groups.size() - 1)[1];
+                groups.add(new boolean[] { negated || outerNegated, outerOther || !isContent(field) });
+                negated = false;
+                field = null;
+                i++;
+                continue;
+            }
+            if (c == ')') {
+                if (!groups.isEmpty()) {
+                    groups.remove(groups.size() - 1);
+                }
+                i = skipModifiers(query, i + 1);
+                continue;
+            }
+            if (c == '[' || c == '{') {
+                // Range query: nothing to highlight
+                int close = indexOfAny(query, i + 1, c == '[' ? "]}" : "}]");
+                i = skipModifiers(query, close < 0 ? query.length() : close + 1);
+                negated = false;
+                field = null;
+                continue;
+            }
+
+            // A term or phrase, possibly preceded by a field name
+            String text;
+            boolean phrase = c == '"';
+            if (phrase) {
+                int close = query.indexOf('"', i + 1);
+                int end = close < 0 ? query.length() : close;
+                text = query.substring(i + 1, end);
+                i = skipModifiers(query, Math.min(query.length(), end + 1));
+            } else {
+                StringBuilder word = new StringBuilder();
+                while (i < query.length()) {
+                    char w = query.charAt(i);
+                    if (w == '\\' && i + 1 < query.length()) {
+                        word.append(query.charAt(i + 1));
+                        i += 2;
+                        continue;
+                    }
+                    if (Character.isWhitespace(w) || w == '(' || w == ')' || w == '"' || w == '^' || w == '~') {
+                        break;
+                    }
+                    if (w == ':') {
+                        break;
+                    }
+                    word.append(w);
+                    i++;
+                }
+                if (i < query.length() && query.charAt(i) == ':') {
+                    field = word.toString();
+                    i++;
+                    continue;
+                }
+                text = word.toString();
+                i = skipModifiers(query, i);
+                if (text.equals("AND") || text.equals("OR") || text.equals("&&") || text.equals("||")) {
+                    continue;
+                }
+                if (text.equals("NOT")) {
+                    negated = true;
+                    continue;
+                }
+            }
+
+            boolean groupNegated = !groups.isEmpty() && groups.get(groups.size() - 1)[0];
+            boolean groupOther = !groups.isEmpty() && groups.get(groups.size() - 1)[1];
+            if (!negated && !groupNegated && !groupOther && isContent(field)) {
+                addTerms(text, phrase);
+            }
+            negated = false;
+            field = null;
+        }
+    }
+
+    private void addTerms(String text, boolean phrase) {
+        if (!phrase && (text.indexOf('*') >= 0 || text.indexOf('?') >= 0)) {
+            // Wildcard terms are not analyzed by the query parser, only lower-cased
+            String lower = text.toLowerCase(Locale.ROOT);
+            if (!lower.replace("*", "").replace("?", "").isEmpty()) {
+                wildcards.add(Pattern.compile(wildcardToRegex(lower)));
+            }
+            return;
+        }
+        int pos = 0;
+        int[] token = new int[2];
+        while (nextToken(text, pos, token)) {
+            String word = text.substring(token[0], token[1]).toLowerCase(Locale.ROOT);
+            if (!STOP_WORDS.contains(word)) {
+                terms.add(word);
+            }
+            pos = token[1];
+        }
+    }
+
+    private static boolean isContent(String field) {
+        return field == null || CONTENT_FIELD.equals(field);
+    }
+
+    /**
+     * Skip boost (^2) and fuzzy or proximity (~, ~0.8) suffixes.
+     */
+    private static int skipModifiers(String query, int i) {
+        while (i < query.length() && (query.charAt(i) == '^' || query.charAt(i) == '~')) {
+            i++;
+            while (i < query.length() && (Character.isDigit(query.charAt(i)) || query.charAt(i) == '.')) {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private static int indexOfAny(String s, int from, String chars) {
+        for (int i = from; i < s.length(); i++) {
+            if (chars.indexOf(s.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String wildcardToRegex(String wildcard) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < wildcard.length(); i++) {
+            char c = wildcard.charAt(i);
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return regex.toString();
+    }
+
+    /**
+     * Find the next token at or after {@code from}.
+     *
+     * @param token receives the [start, end) offsets of the token
+     * @return false if there is no further token
+     */
+    static boolean nextToken(String text, int from, int[] token) {
+        int i = from;
+        while (i < text.length() && !isWordChar(text.charAt(i))) {
+            i++;
+        }
+        if (i >= text.length()) {
+            return false;
+        }
+        int start = i;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (isWordChar(c)) {
+                i++;
+            } else if (joins(text, i)) {
+                i += 2;
+            } else {
+                break;
+            }
+        }
+        token[0] = start;
+        token[1] = i;
+        return true;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * Whether the punctuation at {@code i} joins the characters on either side
+     * into one token: '.' and '\'' between two letters or two digits, ':'
+     * between two letters.
+     */
+    private static boolean joins(String text, int i) {
+        if (i == 0 || i + 1 >= text.length()) {
+            return false;
+        }
+        char c = text.charAt(i);
+        char before = text.charAt(i - 1);
+        char after = text.charAt(i + 1);
+        if (c == '.' || c == '\'') {
+            return (Character.isLetter(before) && Character.isLetter(after))
+                || (Character.isDigit(before) && Character.isDigit(after));
+        }
+        if (c == ':') {
+            return Character.isLetter(before) && Character.isLetter(after);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.handlers;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.gitblit.manager.IGitblit;
+import com.gitblit.models.UserModel;
+import com.gitblit.plugin.mcp.metrics.ApiMetrics;
+import com.gitblit.plugin.mcp.metrics.CompressionMetrics;
+import com.gitblit.plugin.mcp.metrics.RateLimitMetrics;
+import com.gitblit.plugin.mcp.model.MetricsResponse;
+import com.gitblit.plugin.mcp.util.ResponseWriter;
+
+/**
+ * Handler for GET /api/.mcp-internal/metrics
+ * Reports runtime counters of the API. Admin only.
+ */
+public class MetricsHandler implements RequestHandler {
+
+    @Override
+    public void handle(HttpServletRequest request, HttpServletResponse response,
+                       IGitblit gitblit, UserModel user) throws IOException {
+
+        if (!user.canAdmin()) {
+            ResponseWriter.writeError(response, HttpServletResponse.SC_FORBIDDEN,
+                "Administrator access required");
+            return;
+        }
+
+        MetricsResponse metrics = new MetricsResponse();
+        metrics.compression = CompressionMetrics.get().snapshot();
+        metrics.rateLimits = RateLimitMetrics.get().snapshot();
+        metrics.endpoints = ApiMetrics.get().snapshot();
+
+        ResponseWriter.writeJson(response, metrics);
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.handlers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.manager.IGitblit;
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.UserModel;
+import com.gitblit.plugin.mcp.cache.AccessibleRepositories;
+import com.gitblit.plugin.mcp.cache.BlobCache;
+import com.gitblit.plugin.mcp.cache.CachedBlob;
+import com.gitblit.plugin.mcp.cache.RepositoryAccessCache;
+import com.gitblit.plugin.mcp.index.TrigramIndex;
+import com.gitblit.plugin.mcp.index.TrigramIndexManager;
+import com.gitblit.plugin.mcp.index.Trigrams;
+import com.gitblit.plugin.mcp.metrics.RequestMetrics;
+import com.gitblit.plugin.mcp.model.RegexSearchResponse;
+import com.gitblit.plugin.mcp.util.Deadline;
+import com.gitblit.plugin.mcp.util.PathGlob;
+import com.gitblit.plugin.mcp.util.ResponseWriter;
+import com.gitblit.utils.ArrayUtils;
+import com.gitblit.utils.StringUtils;
+
+/**
+ * Handler for GET /api/.mcp-internal/search/regex
+ * Searches file contents line by line with a regular expression.
+ *
+ * The plugin's trigram index narrows the files to those containing every
+ * literal the expression requires; only those are read and matched.
+ * Indexes are built in the background; repositories whose index is not
+ * ready by the request deadline are reported instead of searched.
+ */
+public class RegexSearchHandler implements RequestHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(RegexSearchHandler.class);
+
+    private static final int DEFAULT_LIMIT = 25;
+    private static final int MAX_LIMIT = 100;
+    private static final int MAX_MATCHES_PER_FILE = 20;
+    private static final int MAX_LINE_LENGTH = 500;
+
+    @Override
+    public void handle(HttpServletRequest request, HttpServletResponse response,
+                       IGitblit gitblit, UserModel user) throws IOException {
+
+        // Parse required parameters
+        String patternParam = request.getParameter("pattern");
+        if (StringUtils.isEmpty(patternParam)) {
+            ResponseWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST,
+                "Missing required parameter: pattern");
+            return;
+        }
+
+        // Parse optional parameters
+        String reposParam = request.getParameter("repos");
+        String pathPattern = request.getParameter("pathPattern");
+        String branch = request.getParameter("branch");
+        boolean caseInsensitive = "true".equalsIgnoreCase(request.getParameter("caseInsensitive"));
+        int limit = parseIntParam(request, "count", DEFAULT_LIMIT);
+        if (limit < 1) limit = DEFAULT_LIMIT;
+        if (limit > MAX_LIMIT) limit = MAX_LIMIT;
+
+        Pattern pattern;
+        PathGlob pathGlob = null;
+        try {
+            pattern = Pattern.compile(patternParam, caseInsensitive ? Pattern.CASE_INSENSITIVE : 0);
+        } catch (PatternSyntaxException e) {
+            ResponseWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST,
+                "Invalid regular expression: " + e.getMessage());
+            return;
+        }
+        try {
+            if (!StringUtils.isEmpty(pathPattern)) {
+                pathGlob = PathGlob.compile(pathPattern);
+            }
+        } catch (PatternSyntaxException e) {
+            ResponseWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST,
+                "Invalid glob pattern: " + e.getMessage());
+            return;
+        }
+        if (!StringUtils.isEmpty(branch) && !branch.startsWith("refs/")) {
+            branch = "refs/heads/" + branch;
+        }
+
+        // Determine repositories to search
+        AccessibleRepositories access = RepositoryAccessCache.get(gitblit.getSettings()).get(gitblit, user);
+        List<RepositoryModel> searchRepos = getSearchRepositories(access, reposParam);
+        if (searchRepos.isEmpty()) {
+            ResponseWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST,
+                "No accessible indexed repositories found");
+            return;
+        }
+
+        RequestMetrics metrics = RequestMetrics.of(request);
+        metrics.mark("resolve");
+
+        int[] trigrams = Trigrams.required(patternParam);
+        log.info("Regex search: user={}, pattern='{}', trigrams={}, repos={}, pathPattern='{}'",
+                 user.username, patternParam, trigrams.length, searchRepos.size(), pathPattern);
+
+        // Get the index of every repository; stale or missing ones are
+        // updated in the background, all at once, and waited for below
+        TrigramIndexManager indexes = TrigramIndexManager.get(gitblit);
+        Deadline deadline = Deadline.of(request);
+        boolean unsearched = false;
+        boolean expired = false;
+        TrigramIndex[] repoIndexes = new TrigramIndex[searchRepos.size()];
+        List<Map<String, ObjectId>> repoHeads = new ArrayList<>();
+        for (int i = 0; i < searchRepos.size(); i++) {
+            RepositoryModel model = searchRepos.get(i);
+            Map<String, ObjectId> heads = null;
+            Repository repository = gitblit.getRepository(model.name);
+            if (repository != null) {
+                try {
+                    heads = TrigramIndexManager.resolveBranches(repository, model);
+                    repoIndexes[i] = indexes.getCurrentIndex(gitblit, model.name, heads);
+                } finally {
+                    repository.close();
+                }
+            }
+            repoHeads.add(heads);
+        }
+
+        // Select candidate files of every repository from its trigram index.
+        // Updates are waited for with at most half of the remaining time, so
+        // the other half is left to verify candidates; a repository whose
+        // update is not done by then is searched with its previous index.
+        List<RepoCandidates> candidates = new ArrayList<>();
+        List<String> indexing = new ArrayList<>();
+        int candidateCount = 0;
+        long waitUntil = System.nanoTime() + deadline.remainingNanos() / 2;
+        for (int i = 0; i < searchRepos.size(); i++) {
+            RepositoryModel model = searchRepos.get(i);
+            if (repoHeads.get(i) == null) continue;
+            TrigramIndex index = repoIndexes[i];
+            if (index == null) {
+                index = indexes.awaitIndex(model.name, repoHeads.get(i), waitUntil);
+            }
+            if (index == null) {
+                indexing.add(model.name);
+                index = indexes.getLastIndex(model.name);
+            }
+            if (index == null) {
+                unsearched = true;
+                continue;
+            }
+            RepoCandidates rc = new RepoCandidates();
+            rc.repository = model.name;
+            rc.branch = !StringUtils.isEmpty(branch) ? branch : model.HEAD;
+            rc.commitId = index.getCommit(rc.branch);
+            if (rc.commitId == null) continue;
+            for (TrigramIndex.Entry entry : index.candidates(rc.branch, trigrams)) {
+                if (pathGlob == null || pathGlob.matches(entry.path)) {
+                    rc.entries.add(entry);
+                }
+            }
+            candidateCount += rc.entries.size();
+            candidates.add(rc);
+        }
+        metrics.mark("index");
+
+        RegexSearchResponse searchResponse = new RegexSearchResponse();
+        searchResponse.pattern = patternParam;
+        searchResponse.candidateCount = candidateCount;
+        searchResponse.results = new ArrayList<>();
+
+        // Verify candidates until one match more than requested shows that the limit was hit
+        BlobCache blobCache = BlobCache.get(gitblit.getSettings());
+        Matcher matcher = pattern.matcher("");
+        verify:
+        for (RepoCandidates rc : candidates) {
+            if (searchResponse.limitHit || expired) break;
+            Repository repository = gitblit.getRepository(rc.repository);
+            if (repository == null) continue;
+            try (ObjectReader reader = repository.newObjectReader()) {
+                for (TrigramIndex.Entry entry : rc.entries) {
+                    if (deadline.isExpired()) {
+                        expired = true;
+                        break;
+                    }
+                    CachedBlob blob = blobCache.load(reader, entry.blobId);
+                    if (blob.binary) continue;
+
+                    RegexSearchResponse.RegexSearchResult result;
+                    try {
+                        result = matchLines(blob, matcher, deadline);
+                    } catch (DeadlineExceededException e) {
+                        // Backtracking ran into the deadline
+                        expired = true;
+                        break verify;
+                    }
+                    if (result == null) continue;
+                    if (searchResponse.results.size() >= limit) {
+                        searchResponse.limitHit = true;
+                        break;
+                    }
+                    result.repository = rc.repository;
+                    result.path = entry.path;
+                    result.branch = rc.branch;
+                    result.commitId = rc.commitId.getName();
+                    searchResponse.results.add(result);
+                }
+            } finally {
+                repository.close();
+            }
+        }
+        metrics.mark("verify");
+        if (expired || unsearched) {
+            searchResponse.partial = true;
+        }
+        if (!indexing.isEmpty()) {
+            searchResponse.indexing = indexing;
+        }
+
+        ResponseWriter.writeJson(response, searchResponse);
+    }
+
+    /**
+     * Match every line of the blob.
+     *
+     * @return the matching lines, or null if no line matches
+     * @throws DeadlineExceededException if the deadline passes while matching
+     */
+    private static RegexSearchResponse.RegexSearchResult matchLines(CachedBlob blob, Matcher matcher,
+                                                                     Deadline deadline) {
+        RegexSearchResponse.RegexSearchResult result = null;
+        for (int i = 0; i < blob.getLineCount(); i++) {
+            String line = blob.getLine(i);
+            if (!matcher.reset(new DeadlineCharSequence(line, deadline)).find()) continue;
+
+            if (result == null) {
+                result = new RegexSearchResponse.RegexSearchResult();
+                result.matches = new ArrayList<>();
+            }
+            if (result.matches.size() >= MAX_MATCHES_PER_FILE) {
+                result.matchesTruncated = true;
+                break;
+            }
+            if (line.length() > MAX_LINE_LENGTH) {
+                line = line.substring(0, MAX_LINE_LENGTH);
+            }
+            result.matches.add(new RegexSearchResponse.LineMatch(i + 1, line));
+        }
+        return result;
+    }
+
+    /**
+     * Get the accessible, indexed repositories to search, sorted by name.
+     */
+    private List<RepositoryModel> getSearchRepositories(AccessibleRepositories access, String reposParam) {
+        List<RepositoryModel> result = new ArrayList<>();
+        if (StringUtils.isEmpty(reposParam)) {
+            for (RepositoryModel model : access.getModels()) {
+                if (isSearchable(model)) {
+                    result.add(model);
+                }
+            }
+        } else {
+            for (String repo : reposParam.split(",")) {
+                RepositoryModel model = access.get(repo.trim());
+                if (model != null && isSearchable(model)) {
+                    result.add(model);
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static boolean isSearchable(RepositoryModel model) {
+        return model.hasCommits && !ArrayUtils.isEmpty(model.indexedBranches);
+    }
+
+    private int parseIntParam(HttpServletRequest request, String name, int defaultValue) {
+        String value = request.getParameter(name);
+        if (StringUtils.isEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Line text that checks the deadline as the regex engine reads it, so
+     * that catastrophic backtracking cannot run past it.
+     */
+    private static class DeadlineCharSequence implements CharSequence {
+        private static final int CHECK_INTERVAL = 4096;
+
+        private final String text;
+        private final Deadline deadline;
+        private int reads;
+
+        DeadlineCharSequence(String text, Deadline deadline) {
+            this.text = text;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++reads >= CHECK_INTERVAL) {
+                reads = 0;
+                if (deadline.isExpired()) {
+                    throw new DeadlineExceededException();
+                }
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    private static class DeadlineExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        DeadlineExceededException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Candidate files of one repository.
+     */
+    private static class RepoCandidates {
+        String repository;
+        String branch;
+        ObjectId commitId;
+        final List<TrigramIndex.Entry> entries = new ArrayList<>();
+    }
+}
@@ -17,7 +17,10 @@ import javax.servlet.http.HttpServletResponse;
 import com.gitblit.manager.IGitblit;
 import com.gitblit.models.RepositoryModel;
 import com.gitblit.models.UserModel;
+import com.gitblit.plugin.mcp.cache.RepositoryAccessCache;
+import com.gitblit.plugin.mcp.metrics.RequestMetrics;
 import com.gitblit.plugin.mcp.model.RepoListResponse;
+import com.gitblit.plugin.mcp.util.Cursor;
 import com.gitblit.plugin.mcp.util.ResponseWriter;
 import com.gitblit.utils.StringUtils;
 
@@ -43,6 +46,7 @@ public class ReposHandler implements RequestHandler {
 
         // Parse query parameters
         String query = request.getParameter("query");
+        String after = request.getParameter("after");
         int limit = parseIntParam(request, "limit", DEFAULT_LIMIT);
         int offset = parseIntParam(request, "offset", 0);
 
@@ -54,7 +58,8 @@ public class ReposHandler implements RequestHandler {
         if (offset < 0) offset = 0;
 
         // Get all accessible repositories
-        List<RepositoryModel> allRepos = gitblit.getRepositoryModels(user);
+        List<RepositoryModel> allRepos = RepositoryAccessCache.get(gitblit.getSettings()).get(gitblit, user).getModels();
+        RequestMetrics.of(request).mark("resolve");
 
         // Filter by query (case-insensitive substring match on name)
         List<RepositoryModel> filteredRepos = new ArrayList<>();
@@ -69,14 +74,30 @@ public class ReposHandler implements RequestHandler {
         Collections.sort(filteredRepos, new Comparator<RepositoryModel>() {
             @Override
             public int compare(RepositoryModel a, RepositoryModel b) {
-                return a.name.compareToIgnoreCase(b.name);
+                return compareNames(a.name, b.name);
             }
         });
 
         int totalCount = filteredRepos.size();
 
-        // Apply offset-based pagination
-        int startIndex = Math.min(offset, filteredRepos.size());
+        // Apply cursor-based pagination (the cursor holds the last returned name),
+        // falling back to offset-based pagination
+        int startIndex;
+        if (!StringUtils.isEmpty(after)) {
+            String[] cursor = Cursor.decode(after, 1);
+            if (cursor == null) {
+                ResponseWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST,
+                    "Invalid cursor: " + after);
+                return;
+            }
+            startIndex = 0;
+            while (startIndex < filteredRepos.size() &&
+                   compareNames(filteredRepos.get(startIndex).name, cursor[0]) <= 0) {
+                startIndex++;
+            }
+        } else {
+            startIndex = Math.min(offset, filteredRepos.size());
+        }
         int endIndex = Math.min(startIndex + limit, filteredRepos.size());
         List<RepositoryModel> pageRepos = filteredRepos.subList(startIndex, endIndex);
 
@@ -100,10 +121,22 @@ public class ReposHandler implements RequestHandler {
         // Set pagination info
         result.totalCount = totalCount;
         result.limitHit = endIndex < totalCount;
+        if (result.limitHit && endIndex > startIndex) {
+            result.nextCursor = Cursor.encode(filteredRepos.get(endIndex - 1).name);
+        }
 
         ResponseWriter.writeJson(response, result);
     }
 
+    /**
+     * Case-insensitive name order, with a case-sensitive tie break so that
+     * cursors resume at a well-defined position.
+     */
+    private static int compareNames(String a, String b) {
+        int result = a.compareToIgnoreCase(b);
+        return result != 0 ? result : a.compareTo(b);
+    }
+
     private int parseIntParam(HttpServletRequest request, String name, int defaultValue) {
         String value = request.getParameter(name);
         if (StringUtils.isEmpty(value)) {
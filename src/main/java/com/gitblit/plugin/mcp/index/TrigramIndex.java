@@ -0,0 +1,567 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import com.gitblit.plugin.mcp.util.PackOrder;
+
+/**
+ * Trigram posting index over the files of one repository's indexed branches.
+ *
+ * Blobs are indexed once no matter how many branches or paths refer to
+ * them, and are numbered by ordinal. Each trigram maps to the ascending
+ * ordinals of the blobs containing it. Binary and oversized blobs get an
+ * ordinal but no postings and are never candidates.
+ *
+ * Instances are immutable: {@link #update} returns a new index that reuses
+ * the postings of every blob still referenced and only reads blobs that
+ * are new, so searches can keep using the previous index meanwhile.
+ */
+public class TrigramIndex {
+
+    private static final int MAGIC = 0x4d435433;  // "MCT3"
+    private static final int VERSION = 1;
+
+    private final ObjectId[] blobs;
+    private final BitSet excluded;
+    private final Map<String, Branch> branches;
+    private final int[] keys;           // sorted trigrams
+    private final int[][] postings;     // blob ordinals per trigram, ascending
+
+    /**
+     * Files of one branch at the indexed commit, sorted by path.
+     */
+    private static class Branch {
+        final ObjectId commitId;
+        final String[] paths;
+        final int[] blobs;
+
+        Branch(ObjectId commitId, String[] paths, int[] blobs) {
+            this.commitId = commitId;
+            this.paths = paths;
+            this.blobs = blobs;
+        }
+    }
+
+    /**
+     * A file that may contain a match.
+     */
+    public static class Entry {
+        public final String path;
+        public final ObjectId blobId;
+
+        Entry(String path, ObjectId blobId) {
+            this.path = path;
+            this.blobId = blobId;
+        }
+    }
+
+    private TrigramIndex(ObjectId[] blobs, BitSet excluded, Map<String, Branch> branches,
+                         int[] keys, int[][] postings) {
+        this.blobs = blobs;
+        this.excluded = excluded;
+        this.branches = branches;
+        this.keys = keys;
+        this.postings = postings;
+    }
+
+    /**
+     * An index without branches.
+     */
+    public static TrigramIndex empty() {
+        return new TrigramIndex(new ObjectId[0], new BitSet(), new TreeMap<String, Branch>(),
+            new int[0], new int[0][]);
+    }
+
+    /**
+     * Indexed commit of a branch, or null if the branch is not indexed.
+     */
+    public ObjectId getCommit(String branch) {
+        Branch b = branches.get(branch);
+        return b == null ? null : b.commitId;
+    }
+
+    public Set<String> getBranches() {
+        return Collections.unmodifiableSet(branches.keySet());
+    }
+
+    public int getBlobCount() {
+        return blobs.length;
+    }
+
+    /**
+     * Check whether the index covers exactly the given branch commits.
+     */
+    public boolean isCurrent(Map<String, ObjectId> heads) {
+        if (heads.size() != branches.size()) {
+            return false;
+        }
+        for (Map.Entry<String, ObjectId> head : heads.entrySet()) {
+            Branch b = branches.get(head.getKey());
+            if (b == null || !b.commitId.equals(head.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Files of the branch whose content contains all the trigrams, in path
+     * order. With no trigrams every indexed file is a candidate.
+     */
+    public List<Entry> candidates(String branch, int[] trigrams) {
+        Branch b = branches.get(branch);
+        if (b == null) {
+            return Collections.emptyList();
+        }
+
+        BitSet matches = null;
+        if (trigrams.length > 0) {
+            matches = intersect(trigrams);
+            if (matches == null) {
+                return Collections.emptyList();
+            }
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < b.paths.length; i++) {
+            int ordinal = b.blobs[i];
+            if (!excluded.get(ordinal) && (matches == null || matches.get(ordinal))) {
+                entries.add(new Entry(b.paths[i], blobs[ordinal]));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Blob ordinals present in the postings of every trigram, or null if
+     * some trigram does not occur at all.
+     */
+    private BitSet intersect(int[] trigrams) {
+        List<int[]> lists = new ArrayList<>(trigrams.length);
+        for (int trigram : trigrams) {
+            int k = Arrays.binarySearch(keys, trigram);
+            if (k < 0) {
+                return null;
+            }
+            lists.add(postings[k]);
+        }
+
+        // Probe the rarer trigrams first
+        Collections.sort(lists, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return Integer.compare(a.length, b.length);
+            }
+        });
+
+        BitSet result = new BitSet(blobs.length);
+        int[] smallest = lists.get(0);
+        for (int ordinal : smallest) {
+            boolean all = true;
+            for (int l = 1; l < lists.size() && all; l++) {
+                all = Arrays.binarySearch(lists.get(l), ordinal) >= 0;
+            }
+            if (all) {
+                result.set(ordinal);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Approximate retained heap of the index.
+     */
+    public long estimateSize() {
+        long estimate = 64 + 40L * blobs.length + 4L * keys.length;
+        for (int[] list : postings) {
+            estimate += 16 + 4L * list.length;
+        }
+        for (Branch b : branches.values()) {
+            for (String path : b.paths) {
+                estimate += 40 + 2L * path.length();
+            }
+            estimate += 4L * b.blobs.length;
+        }
+        return estimate;
+    }
+
+    /**
+     * Build the index for the given branch commits, reading only blobs this
+     * index does not know yet.
+     *
+     * @param heads commit per branch to index
+     * @param maxFileSize blobs larger than this are not indexed
+     */
+    public TrigramIndex update(Repository repository, Map<String, ObjectId> heads, long maxFileSize)
+            throws IOException {
+        Map<ObjectId, Integer> known = new HashMap<>(blobs.length * 2);
+        for (int i = 0; i < blobs.length; i++) {
+            known.put(blobs[i], i);
+        }
+
+        try (ObjectReader reader = repository.newObjectReader()) {
+            // Files per branch; unchanged branches keep their listing
+            Map<String, ObjectId[]> branchBlobs = new TreeMap<>();
+            Map<String, String[]> branchPaths = new TreeMap<>();
+            for (Map.Entry<String, ObjectId> head : heads.entrySet()) {
+                Branch previous = branches.get(head.getKey());
+                if (previous != null && previous.commitId.equals(head.getValue())) {
+                    ObjectId[] ids = new ObjectId[previous.blobs.length];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = blobs[previous.blobs[i]];
+                    }
+                    branchPaths.put(head.getKey(), previous.paths);
+                    branchBlobs.put(head.getKey(), ids);
+                } else {
+                    listFiles(reader, head.getValue(), head.getKey(), branchPaths, branchBlobs);
+                }
+            }
+
+            // Renumber: blobs still referenced keep their relative order, new ones follow
+            Set<ObjectId> live = new LinkedHashSet<>();
+            for (ObjectId[] ids : branchBlobs.values()) {
+                Collections.addAll(live, ids);
+            }
+            int[] remap = new int[blobs.length];
+            Arrays.fill(remap, -1);
+            List<ObjectId> ordered = new ArrayList<>(live.size());
+            BitSet newExcluded = new BitSet();
+            for (int i = 0; i < blobs.length; i++) {
+                if (live.contains(blobs[i])) {
+                    remap[i] = ordered.size();
+                    if (excluded.get(i)) {
+                        newExcluded.set(ordered.size());
+                    }
+                    ordered.add(blobs[i]);
+                }
+            }
+            List<ObjectId> added = new ArrayList<>();
+            for (ObjectId id : live) {
+                if (!known.containsKey(id)) {
+                    added.add(id);
+                }
+            }
+
+            // Read new blobs in pack order
+            Map<Integer, IntList> addedPostings = new HashMap<>();
+            for (ObjectId id : PackOrder.sort(repository, added)) {
+                int ordinal = ordered.size();
+                ordered.add(id);
+                if (reader.getObjectSize(id, Constants.OBJ_BLOB) > maxFileSize) {
+                    newExcluded.set(ordinal);
+                    continue;
+                }
+                byte[] content = reader.open(id, Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE);
+                if (isBinary(content)) {
+                    newExcluded.set(ordinal);
+                    continue;
+                }
+                for (int trigram : Trigrams.of(content)) {
+                    IntList list = addedPostings.get(trigram);
+                    if (list == null) {
+                        list = new IntList();
+                        addedPostings.put(trigram, list);
+                    }
+                    list.add(ordinal);
+                }
+            }
+
+            // Merge postings; renumbered ordinals precede new ones, so lists stay sorted
+            Map<Integer, int[]> merged = new HashMap<>(keys.length + addedPostings.size());
+            for (int k = 0; k < keys.length; k++) {
+                IntList list = new IntList();
+                for (int ordinal : postings[k]) {
+                    if (remap[ordinal] >= 0) {
+                        list.add(remap[ordinal]);
+                    }
+                }
+                IntList extra = addedPostings.remove(keys[k]);
+                if (extra != null) {
+                    list.addAll(extra);
+                }
+                if (list.size > 0) {
+                    merged.put(keys[k], list.toArray());
+                }
+            }
+            for (Map.Entry<Integer, IntList> entry : addedPostings.entrySet()) {
+                merged.put(entry.getKey(), entry.getValue().toArray());
+            }
+            int[] newKeys = new int[merged.size()];
+            int n = 0;
+            for (Integer key : merged.keySet()) {
+                newKeys[n++] = key;
+            }
+            Arrays.sort(newKeys);
+            int[][] newPostings = new int[newKeys.length][];
+            for (int k = 0; k < newKeys.length; k++) {
+                newPostings[k] = merged.get(newKeys[k]);
+            }
+
+            // Branch listings by ordinal
+            Map<ObjectId, Integer> ordinals = new HashMap<>(ordered.size() * 2);
+            for (int i = 0; i < ordered.size(); i++) {
+                ordinals.put(ordered.get(i), i);
+            }
+            Map<String, Branch> newBranches = new TreeMap<>();
+            for (Map.Entry<String, ObjectId> head : heads.entrySet()) {
+                ObjectId[] ids = branchBlobs.get(head.getKey());
+                int[] branchOrdinals = new int[ids.length];
+                for (int i = 0; i < ids.length; i++) {
+                    branchOrdinals[i] = ordinals.get(ids[i]);
+                }
+                newBranches.put(head.getKey(),
+                    new Branch(head.getValue().copy(), branchPaths.get(head.getKey()), branchOrdinals));
+            }
+
+            return new TrigramIndex(ordered.toArray(new ObjectId[ordered.size()]), newExcluded, newBranches,
+                newKeys, newPostings);
+        }
+    }
+
+    /**
+     * List the regular files of a commit, sorted by path.
+     */
+    private static void listFiles(ObjectReader reader, ObjectId commitId, String branch,
+                                  Map<String, String[]> branchPaths, Map<String, ObjectId[]> branchBlobs)
+            throws IOException {
+        List<String> paths = new ArrayList<>();
+        List<ObjectId> ids = new ArrayList<>();
+        try (RevWalk revWalk = new RevWalk(reader);
+             TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.addTree(revWalk.parseCommit(commitId).getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                int mode = treeWalk.getRawMode(0);
+                if (mode == FileMode.REGULAR_FILE.getBits() || mode == FileMode.EXECUTABLE_FILE.getBits()) {
+                    paths.add(treeWalk.getPathString());
+                    ids.add(treeWalk.getObjectId(0));
+                }
+            }
+        }
+        // Tree order sorts "a/b" after "a.b"; keep plain string order like the other endpoints
+        Integer[] order = new Integer[paths.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        final List<String> unsorted = paths;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return unsorted.get(a).compareTo(unsorted.get(b));
+            }
+        });
+        String[] sortedPaths = new String[order.length];
+        ObjectId[] sortedIds = new ObjectId[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedPaths[i] = paths.get(order[i]);
+            sortedIds[i] = ids.get(order[i]);
+        }
+        branchPaths.put(branch, sortedPaths);
+        branchBlobs.put(branch, sortedIds);
+    }
+
+    /**
+     * Check if content appears to be binary by looking for null bytes,
+     * using the same rule as the blob cache.
+     */
+    private static boolean isBinary(byte[] content) {
+        int checkLength = Math.min(content.length, 8000);
+        for (int i = 0; i < checkLength; i++) {
+            if (content[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write the index to a file, replacing it atomically.
+     */
+    public void save(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        File tmp = new File(parent, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+            out.writeInt(blobs.length);
+            for (ObjectId id : blobs) {
+                id.copyRawTo(raw, 0);
+                out.write(raw);
+            }
+            byte[] excludedBits = excluded.toByteArray();
+            out.writeInt(excludedBits.length);
+            out.write(excludedBits);
+
+            out.writeInt(branches.size());
+            for (Map.Entry<String, Branch> entry : branches.entrySet()) {
+                Branch b = entry.getValue();
+                out.writeUTF(entry.getKey());
+                b.commitId.copyRawTo(raw, 0);
+                out.write(raw);
+                out.writeInt(b.paths.length);
+                for (int i = 0; i < b.paths.length; i++) {
+                    out.writeUTF(b.paths[i]);
+                    writeVarInt(out, b.blobs[i]);
+                }
+            }
+
+            // Postings as deltas between ascending ordinals
+            out.writeInt(keys.length);
+            for (int k = 0; k < keys.length; k++) {
+                out.writeInt(keys[k]);
+                writeVarInt(out, postings[k].length);
+                int previous = 0;
+                for (int ordinal : postings[k]) {
+                    writeVarInt(out, ordinal - previous);
+                    previous = ordinal;
+                }
+            }
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Read an index written by {@link #save}.
+     *
+     * @return the index, or null if the file is missing or was written by another version
+     */
+    public static TrigramIndex load(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+
+            byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+            ObjectId[] blobs = new ObjectId[in.readInt()];
+            for (int i = 0; i < blobs.length; i++) {
+                in.readFully(raw);
+                blobs[i] = ObjectId.fromRaw(raw);
+            }
+            byte[] excludedBits = new byte[in.readInt()];
+            in.readFully(excludedBits);
+            BitSet excluded = BitSet.valueOf(excludedBits);
+
+            Map<String, Branch> branches = new TreeMap<>();
+            int branchCount = in.readInt();
+            for (int b = 0; b < branchCount; b++) {
+                String name = in.readUTF();
+                in.readFully(raw);
+                ObjectId commitId = ObjectId.fromRaw(raw);
+                String[] paths = new String[in.readInt()];
+                int[] ordinals = new int[paths.length];
+                for (int i = 0; i < paths.length; i++) {
+                    paths[i] = in.readUTF();
+                    ordinals[i] = readVarInt(in);
+                }
+                branches.put(name, new Branch(commitId, paths, ordinals));
+            }
+
+            int[] keys = new int[in.readInt()];
+            int[][] postings = new int[keys.length][];
+            for (int k = 0; k < keys.length; k++) {
+                keys[k] = in.readInt();
+                int[] list = new int[readVarInt(in)];
+                int previous = 0;
+                for (int i = 0; i < list.length; i++) {
+                    previous += readVarInt(in);
+                    list[i] = previous;
+                }
+                postings[k] = list;
+            }
+            return new TrigramIndex(blobs, excluded, branches, keys, postings);
+        } catch (EOFException e) {
+            // Truncated, e.g. by a crash while writing without atomic rename
+            return null;
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Growable list of ints.
+     */
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gitblit.Constants;
+import com.gitblit.IStoredSettings;
+import com.gitblit.manager.IGitblit;
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.plugin.mcp.cache.CacheStats;
+import com.gitblit.plugin.mcp.cache.WeightedLruCache;
+import com.gitblit.plugin.mcp.util.WorkerPool;
+
+/**
+ * Keeps one {@link TrigramIndex} per repository up to date, on disk and in memory.
+ *
+ * Indexes are built on first use, cover the branches Gitblit indexes for
+ * the repository, and are brought up to date incrementally whenever a
+ * search finds a branch moved, or after a push. Builds and updates always
+ * run in the background; a search waits for them only until its deadline.
+ * Repositories that were never searched are not indexed.
+ */
+public class TrigramIndexManager {
+
+    private static final Logger log = LoggerFactory.getLogger(TrigramIndexManager.class);
+
+    public static final String SETTING_FOLDER = "mcp.regex.indexFolder";
+    public static final String SETTING_CACHE_SIZE = "mcp.regex.indexCacheSize";
+    public static final String SETTING_MAX_FILE_SIZE = "mcp.regex.maxFileSize";
+    private static final String DEFAULT_FOLDER = "${baseFolder}/mcp/trigrams";
+    private static final long DEFAULT_CACHE_SIZE = 256L * 1024 * 1024;
+    private static final long DEFAULT_MAX_FILE_SIZE = 1024 * 1024;
+
+    private static final String FILE_SUFFIX = ".trigrams";
+
+    private static TrigramIndexManager instance;
+
+    /**
+     * Get the process-wide manager, configured from the Gitblit settings on first use.
+     */
+    public static synchronized TrigramIndexManager get(IGitblit gitblit) {
+        if (instance == null) {
+            IStoredSettings settings = gitblit.getSettings();
+            instance = new TrigramIndexManager(
+                gitblit.getFileOrFolder(SETTING_FOLDER, DEFAULT_FOLDER),
+                settings.getFilesize(SETTING_CACHE_SIZE, DEFAULT_CACHE_SIZE),
+                settings.getFilesize(SETTING_MAX_FILE_SIZE, DEFAULT_MAX_FILE_SIZE));
+        }
+        return instance;
+    }
+
+    private final File folder;
+    private final long maxFileSize;
+    private final WeightedLruCache<String, TrigramIndex> cache;
+    private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Build> builds = new ConcurrentHashMap<>();
+
+    public TrigramIndexManager(File folder, long maxCacheBytes, long maxFileSize) {
+        this.folder = folder;
+        this.maxFileSize = maxFileSize;
+        this.cache = new WeightedLruCache<>("trigram", maxCacheBytes,
+            new WeightedLruCache.Weigher<String, TrigramIndex>() {
+                @Override
+                public long weigh(String repository, TrigramIndex index) {
+                    return 2L * repository.length() + index.estimateSize();
+                }
+            });
+    }
+
+    /**
+     * Get the index of a repository if it covers the given branch heads;
+     * otherwise start updating it in the background.
+     *
+     * @param heads the indexed branches, see {@link #resolveBranches}
+     * @return the current index, or null if an update was started
+     */
+    public TrigramIndex getCurrentIndex(IGitblit gitblit, String repoName, Map<String, ObjectId> heads) {
+        TrigramIndex index = cache.get(repoName);
+        if (index != null && index.isCurrent(heads)) {
+            return index;
+        }
+        startBuild(gitblit, repoName);
+        return null;
+    }
+
+    /**
+     * Wait for the background update of a repository's index, no longer than
+     * the given absolute {@link System#nanoTime()}.
+     *
+     * @return the updated index, or null if it is not ready in time
+     */
+    public TrigramIndex awaitIndex(String repoName, Map<String, ObjectId> heads, long untilNanoTime) {
+        Build build = builds.get(repoName);
+        if (build != null) {
+            try {
+                long remaining = untilNanoTime - System.nanoTime();
+                if (remaining > 0 && build.done.await(remaining, TimeUnit.NANOSECONDS)) {
+                    return build.index;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+        // Finished between the check and the wait, or the pool was saturated
+        TrigramIndex index = cache.get(repoName);
+        return index != null && index.isCurrent(heads) ? index : null;
+    }
+
+    /**
+     * Get the last index of a repository held in memory, whether or not it
+     * covers the current branch heads. It is still correct for the commits it
+     * records, so a search can use it while an update runs.
+     *
+     * @return the index, or null if none is loaded
+     */
+    public TrigramIndex getLastIndex(String repoName) {
+        return cache.get(repoName);
+    }
+
+    /**
+     * Update the index of a repository in the background, if it has one.
+     * Called after pushes so searches rarely have to wait for an update.
+     */
+    public void scheduleUpdate(IGitblit gitblit, String repoName) {
+        if (fileFor(repoName).isFile()) {
+            startBuild(gitblit, repoName);
+        }
+    }
+
+    /**
+     * Start a background update of a repository's index unless one is
+     * already running or queued.
+     */
+    private void startBuild(final IGitblit gitblit, final String repoName) {
+        final Build build = new Build();
+        if (builds.putIfAbsent(repoName, build) != null) {
+            return;
+        }
+        boolean queued = WorkerPool.get("trigram", 1).execute(new Runnable() {
+            @Override
+            public void run() {
+                Repository repository = null;
+                try {
+                    RepositoryModel model = gitblit.getRepositoryModel(repoName);
+                    repository = gitblit.getRepository(repoName);
+                    if (model != null && repository != null) {
+                        build.index = update(repoName, repository, model);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Failed to update trigram index of " + repoName, e);
+                } finally {
+                    if (repository != null) {
+                        repository.close();
+                    }
+                    builds.remove(repoName, build);
+                    build.done.countDown();
+                }
+            }
+        });
+        if (!queued) {
+            builds.remove(repoName, build);
+            build.done.countDown();
+        }
+    }
+
+    /**
+     * Bring the index of a repository up to date with its indexed branches,
+     * loading it from disk or building it first.
+     */
+    private TrigramIndex update(String repoName, Repository repository, RepositoryModel model)
+            throws IOException {
+        Map<String, ObjectId> heads = resolveBranches(repository, model);
+        TrigramIndex index = cache.get(repoName);
+        if (index != null && index.isCurrent(heads)) {
+            return index;
+        }
+
+        synchronized (lockFor(repoName)) {
+            index = cache.get(repoName);
+            if (index == null) {
+                index = TrigramIndex.load(fileFor(repoName));
+            }
+            if (index == null) {
+                index = TrigramIndex.empty();
+            }
+            if (!index.isCurrent(heads)) {
+                long start = System.nanoTime();
+                int before = index.getBlobCount();
+                index = index.update(repository, heads, maxFileSize);
+                index.save(fileFor(repoName));
+                log.info("Trigram index of {} updated in {} ms: {} blobs, previously {}",
+                    repoName, (System.nanoTime() - start) / 1000000, index.getBlobCount(), before);
+            }
+            cache.put(repoName, index);
+            return index;
+        }
+    }
+
+    /**
+     * Drop the index of a repository that was deleted or renamed.
+     */
+    public void delete(String repoName) {
+        synchronized (lockFor(repoName)) {
+            cache.remove(repoName);
+            File file = fileFor(repoName);
+            if (file.isFile() && !file.delete()) {
+                log.warn("Failed to delete trigram index {}", file);
+            }
+        }
+    }
+
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Resolve the branches Gitblit indexes for the repository to their commits.
+     * The pseudo branch "default" stands for the branch HEAD points to.
+     */
+    public static Map<String, ObjectId> resolveBranches(Repository repository, RepositoryModel model)
+            throws IOException {
+        Map<String, ObjectId> heads = new TreeMap<>();
+        if (model.indexedBranches == null) {
+            return heads;
+        }
+        for (String branch : model.indexedBranches) {
+            String name = branch;
+            if (Constants.DEFAULT_BRANCH.equals(branch)) {
+                Ref head = repository.exactRef(org.eclipse.jgit.lib.Constants.HEAD);
+                if (head == null || !head.isSymbolic()) {
+                    continue;
+                }
+                name = head.getTarget().getName();
+            }
+            Ref ref = repository.exactRef(name);
+            if (ref != null && ref.getObjectId() != null) {
+                heads.put(name, ref.getObjectId().copy());
+            }
+        }
+        return heads;
+    }
+
+    private Object lockFor(String repoName) {
+        Object lock = locks.get(repoName);
+        if (lock == null) {
+            Object created = new Object();
+            lock = locks.putIfAbsent(repoName, created);
+            if (lock == null) {
+                lock = created;
+            }
+        }
+        return lock;
+    }
+
+    private File fileFor(String repoName) {
+        return new File(folder, repoName + FILE_SUFFIX);
+    }
+
+    /**
+     * A background update of one repository's index.
+     */
+    private static class Build {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile TrigramIndex index;
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Trigram extraction for the {@link TrigramIndex}.
+ *
+ * A trigram is three consecutive bytes of the UTF-8 content, packed into
+ * an int, with ASCII letters folded to lower case so that one index serves
+ * case-sensitive and case-insensitive searches. Trigrams that contain a
+ * line terminator are dropped: patterns are matched line by line, so no
+ * match can depend on them.
+ */
+public class Trigrams {
+
+    private static final int[] NONE = new int[0];
+
+    private Trigrams() {
+    }
+
+    /**
+     * Distinct trigrams of the content, sorted.
+     */
+    public static int[] of(byte[] content) {
+        return of(content, content.length);
+    }
+
+    /**
+     * Distinct trigrams of the first {@code length} bytes, sorted.
+     */
+    static int[] of(byte[] content, int length) {
+        if (length < 3) {
+            return NONE;
+        }
+        int[] trigrams = new int[length - 2];
+        int count = 0;
+        for (int i = 0; i + 2 < length; i++) {
+            int b0 = content[i] & 0xff;
+            int b1 = content[i + 1] & 0xff;
+            int b2 = content[i + 2] & 0xff;
+            if (isTerminator(b0) || isTerminator(b1) || isTerminator(b2)) {
+                continue;
+            }
+            trigrams[count++] = pack(b0, b1, b2);
+        }
+        return distinct(trigrams, count);
+    }
+
+    /**
+     * Trigrams that every line matching the regular expression must contain,
+     * sorted. Empty if the expression has no usable literal part, in which
+     * case every file is a candidate.
+     */
+    public static int[] required(String regex) {
+        List<String> literals = requiredLiterals(regex);
+        if (literals.isEmpty()) {
+            return NONE;
+        }
+        StringBuilder joined = new StringBuilder();
+        for (String literal : literals) {
+            // A line terminator between literals keeps them from forming trigrams together
+            joined.append(literal).append('\n');
+        }
+        byte[] bytes = joined.toString().getBytes(StandardCharsets.UTF_8);
+        return of(bytes);
+    }
+
+    /**
+     * Literal strings that occur in every match of the regular expression.
+     *
+     * This is a conservative scan rather than a full regex analysis: it
+     * only follows top-level concatenation, gives up on top-level
+     * alternation, and ends the current literal at anything it does not
+     * fully understand (groups, classes, escapes for character types,
+     * non-ASCII characters). Characters made optional by a quantifier are
+     * removed from the literal.
+     */
+    static List<String> requiredLiterals(String regex) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            switch (c) {
+                case '\\':
+                    if (i + 1 >= regex.length()) {
+                        return new ArrayList<>();
+                    }
+                    char escaped = regex.charAt(i + 1);
+                    if (escaped == 'Q') {
+                        int end = regex.indexOf("\\E", i + 2);
+                        String quoted = end < 0 ? regex.substring(i + 2) : regex.substring(i + 2, end);
+                        i = end < 0 ? regex.length() : end + 2;
+                        if (quantifierAt(regex, i)) {
+                            // The quantifier applies to the last quoted character only
+                            appendLiteral(quoted.substring(0, Math.max(0, quoted.length() - 1)), run, literals);
+                            i = applyQuantifier(regex, i, run, literals, quoted.isEmpty() ? 0 : quoted.charAt(quoted.length() - 1));
+                        } else {
+                            appendLiteral(quoted, run, literals);
+                        }
+                        continue;
+                    }
+                    i += 2;
+                    if (!Character.isLetterOrDigit(escaped) && escaped < 0x80) {
+                        i = literalChar(regex, i, escaped, run, literals);
+                    } else {
+                        // Character types, back references, anchors, control escapes;
+                        // their arguments are not literal text
+                        i = skipQuantifier(regex, skipEscapeArgument(regex, i, escaped));
+                        flush(run, literals);
+                    }
+                    continue;
+                case '[':
+                    i = skipQuantifier(regex, skipClass(regex, i));
+                    flush(run, literals);
+                    continue;
+                case '(':
+                    int close = skipGroup(regex, i);
+                    if (regex.startsWith("(?", i) && changesLiteralMeaning(regex, i, close)) {
+                        return new ArrayList<>();
+                    }
+                    i = skipQuantifier(regex, close);
+                    flush(run, literals);
+                    continue;
+                case '|':
+                    // Top-level alternation: no literal is required by all branches
+                    return new ArrayList<>();
+                case '.':
+                case '^':
+                case '$':
+                    i = skipQuantifier(regex, i + 1);
+                    flush(run, literals);
+                    continue;
+                default:
+                    i = literalChar(regex, i + 1, c, run, literals);
+            }
+        }
+        flush(run, literals);
+        return literals;
+    }
+
+    /**
+     * Add a literal character ending at {@code next}, taking a following quantifier into account.
+     *
+     * @return index after the character and its quantifier
+     */
+    private static int literalChar(String regex, int next, char c, StringBuilder run, List<String> literals) {
+        if (quantifierAt(regex, next)) {
+            return applyQuantifier(regex, next, run, literals, c);
+        }
+        if (c >= 0x80) {
+            // Case folding beyond ASCII is not modelled
+            flush(run, literals);
+        } else {
+            run.append(c);
+        }
+        return next;
+    }
+
+    private static void appendLiteral(String literal, StringBuilder run, List<String> literals) {
+        for (int k = 0; k < literal.length(); k++) {
+            char c = literal.charAt(k);
+            if (c >= 0x80 || c == '\n' || c == '\r') {
+                flush(run, literals);
+            } else {
+                run.append(c);
+            }
+        }
+    }
+
+    /**
+     * Apply the quantifier at {@code i} to the character {@code c} that precedes it.
+     * A quantifier that allows zero repetitions drops the character; any
+     * quantifier ends the current literal.
+     */
+    private static int applyQuantifier(String regex, int i, StringBuilder run, List<String> literals, char c) {
+        char q = regex.charAt(i);
+        boolean optional = q == '*' || q == '?' || (q == '{' && regex.startsWith("{0", i));
+        if (!optional && c != 0 && c < 0x80) {
+            run.append(c);
+        }
+        flush(run, literals);
+        return skipQuantifier(regex, i);
+    }
+
+    /**
+     * Skip the argument of an escape whose letter or digit ends at {@code i},
+     * such as the hex digits of {@code \x41} or the name of {@code \k<name>}.
+     *
+     * @return index after the argument
+     */
+    private static int skipEscapeArgument(String regex, int i, char escaped) {
+        switch (escaped) {
+            case 'x':
+                if (i < regex.length() && regex.charAt(i) == '{') {
+                    return skipPast(regex, i, '}');
+                }
+                return Math.min(regex.length(), i + 2);
+            case 'u':
+                return Math.min(regex.length(), i + 4);
+            case '0':
+                // Up to three octal digits
+                for (int n = 0; n < 3 && i < regex.length() && regex.charAt(i) >= '0' && regex.charAt(i) <= '7'; n++) {
+                    i++;
+                }
+                return i;
+            case 'c':
+                return Math.min(regex.length(), i + 1);
+            case 'k':
+                return i < regex.length() && regex.charAt(i) == '<' ? skipPast(regex, i, '>') : i;
+            case 'p':
+            case 'P':
+            case 'N':
+                if (i < regex.length() && regex.charAt(i) == '{') {
+                    return skipPast(regex, i, '}');
+                }
+                return Math.min(regex.length(), i + 1);
+            default:
+                if (escaped >= '1' && escaped <= '9') {
+                    // A back reference takes as many digits as form a group number
+                    while (i < regex.length() && Character.isDigit(regex.charAt(i))) {
+                        i++;
+                    }
+                }
+                return i;
+        }
+    }
+
+    /**
+     * @return index after the next {@code close} character at or after {@code i}, or the end
+     */
+    private static int skipPast(String regex, int i, char close) {
+        int end = regex.indexOf(close, i);
+        return end < 0 ? regex.length() : end + 1;
+    }
+
+    private static boolean quantifierAt(String regex, int i) {
+        if (i >= regex.length()) {
+            return false;
+        }
+        char c = regex.charAt(i);
+        return c == '*' || c == '+' || c == '?' || (c == '{' && regex.indexOf('}', i) > i);
+    }
+
+    /**
+     * Skip a quantifier and its lazy or possessive modifier, if present.
+     */
+    private static int skipQuantifier(String regex, int i) {
+        if (!quantifierAt(regex, i)) {
+            return i;
+        }
+        i = regex.charAt(i) == '{' ? regex.indexOf('}', i) + 1 : i + 1;
+        if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return index after the character class starting at {@code i}
+     */
+    private static int skipClass(String regex, int i) {
+        int depth = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+                i++;
+                // A leading ']' (after an optional '^') is a literal member
+                if (i < regex.length() && regex.charAt(i) == '^') i++;
+                if (i < regex.length() && regex.charAt(i) == ']') i++;
+                continue;
+            }
+            i++;
+            if (c == ']' && --depth == 0) {
+                return i;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * @return index after the group starting at {@code i}
+     */
+    private static int skipGroup(String regex, int i) {
+        int depth = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                i = skipClass(regex, i);
+                continue;
+            }
+            i++;
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Check for an inline flag group such as (?x) or (?iu:...) that turns on
+     * comments mode, where whitespace is insignificant, or Unicode case
+     * folding, which the ASCII-only folding of the index does not cover.
+     */
+    private static boolean changesLiteralMeaning(String regex, int start, int end) {
+        for (int k = start + 2; k < end; k++) {
+            char c = regex.charAt(k);
+            if (c == 'x' || c == 'u') {
+                return true;
+            }
+            if (c == '-' || c == ':' || c == ')' || !Character.isLetter(c)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static void flush(StringBuilder run, List<String> literals) {
+        if (run.length() >= 3) {
+            literals.add(run.toString());
+        }
+        run.setLength(0);
+    }
+
+    private static boolean isTerminator(int b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private static int pack(int b0, int b1, int b2) {
+        return (fold(b0) << 16) | (fold(b1) << 8) | fold(b2);
+    }
+
+    private static int fold(int b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+
+    private static int[] distinct(int[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || values[unique - 1] != values[i]) {
+                values[unique++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, unique);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide per-endpoint request metrics.
+ */
+public class ApiMetrics {
+
+    /** Endpoint name used for requests that did not reach a handler */
+    public static final String UNKNOWN = "unknown";
+
+    private static final ApiMetrics instance = new ApiMetrics();
+
+    public static ApiMetrics get() {
+        return instance;
+    }
+
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    private ApiMetrics() {
+    }
+
+    /**
+     * Record a finished request.
+     *
+     * @param status HTTP status of the response
+     * @param bytes size of the response body as sent
+     */
+    public void record(RequestMetrics request, int status, long bytes) {
+        String name = request.getEndpoint() != null ? request.getEndpoint() : UNKNOWN;
+        EndpointMetrics metrics = endpoints.get(name);
+        if (metrics == null) {
+            EndpointMetrics created = new EndpointMetrics();
+            metrics = endpoints.putIfAbsent(name, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        metrics.record(request, status, bytes);
+    }
+
+    /**
+     * Snapshot all endpoints, by name.
+     */
+    public Map<String, EndpointMetrics.Snapshot> snapshot() {
+        Map<String, EndpointMetrics.Snapshot> snapshot = new TreeMap<>();
+        for (Map.Entry<String, EndpointMetrics> endpoint : endpoints.entrySet()) {
+            snapshot.put(endpoint.getKey(), endpoint.getValue().snapshot());
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide counters of response compression.
+ */
+public class CompressionMetrics {
+
+    private static final CompressionMetrics instance = new CompressionMetrics();
+
+    public static CompressionMetrics get() {
+        return instance;
+    }
+
+    private final AtomicLong responses = new AtomicLong();
+    private final AtomicLong compressedResponses = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    private CompressionMetrics() {
+    }
+
+    /**
+     * Record a finished response.
+     *
+     * @param uncompressed body size produced by the handler
+     * @param sent body size written to the client
+     * @param compressed whether the body was compressed
+     */
+    public void record(long uncompressed, long sent, boolean compressed) {
+        responses.incrementAndGet();
+        if (compressed) {
+            compressedResponses.incrementAndGet();
+            bytesIn.addAndGet(uncompressed);
+            bytesOut.addAndGet(sent);
+        }
+    }
+
+    /**
+     * Snapshot the counters.
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.responses = responses.get();
+        snapshot.compressedResponses = compressedResponses.get();
+        snapshot.uncompressedBytes = bytesIn.get();
+        snapshot.compressedBytes = bytesOut.get();
+        snapshot.ratio = snapshot.compressedBytes == 0 ? 0
+            : (double) snapshot.uncompressedBytes / snapshot.compressedBytes;
+        return snapshot;
+    }
+
+    /**
+     * Point-in-time compression counters.
+     */
+    public static class Snapshot {
+        public long responses;
+        public long compressedResponses;
+        public long uncompressedBytes;   // of compressed responses only
+        public long compressedBytes;
+        public double ratio;             // uncompressedBytes / compressedBytes
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and latency histograms of one API endpoint.
+ */
+public class EndpointMetrics {
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong clientErrors = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final ConcurrentMap<String, LatencyHistogram> phases = new ConcurrentHashMap<>();
+
+    void record(RequestMetrics request, int status, long bytes) {
+        requests.incrementAndGet();
+        if (status >= 500) {
+            serverErrors.incrementAndGet();
+        } else if (status >= 400) {
+            clientErrors.incrementAndGet();
+        }
+        bytesSent.addAndGet(bytes);
+        latency.record(request.getElapsed());
+
+        for (Map.Entry<String, Long> phase : request.getPhases().entrySet()) {
+            phase(phase.getKey()).record(phase.getValue());
+        }
+    }
+
+    private LatencyHistogram phase(String name) {
+        LatencyHistogram histogram = phases.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = phases.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.requests = requests.get();
+        snapshot.clientErrors = clientErrors.get();
+        snapshot.serverErrors = serverErrors.get();
+        snapshot.bytesSent = bytesSent.get();
+        snapshot.latency = latency.snapshot();
+        snapshot.phases = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> phase : phases.entrySet()) {
+            snapshot.phases.put(phase.getKey(), phase.getValue().snapshot());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Point-in-time metrics of one endpoint.
+     */
+    public static class Snapshot {
+        public long requests;
+        public long clientErrors;   // 4xx responses
+        public long serverErrors;   // 5xx responses
+        public long bytesSent;      // response bodies as sent, after compression
+        public LatencyHistogram.Snapshot latency;
+        public Map<String, LatencyHistogram.Snapshot> phases;
+    }
+}
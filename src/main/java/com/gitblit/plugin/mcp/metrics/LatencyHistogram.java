@@ -0,0 +1,107 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets.
+ *
+ * Each power of two of microseconds is split into four buckets, so
+ * percentiles are accurate to within about 20% across the whole range
+ * while recording costs two atomic increments.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+        counts.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+            // retry
+        }
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >> (exp - 2)) & (SUB_BUCKETS - 1);
+        return exp * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Largest value that falls into a bucket.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exp = bucket / SUB_BUCKETS;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exp - 2)) - 1;
+    }
+
+    /**
+     * Snapshot the histogram. Concurrent updates may be partially included.
+     */
+    public Snapshot snapshot() {
+        long[] buckets = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = counts.get(i);
+            total += buckets[i];
+        }
+
+        Snapshot snapshot = new Snapshot();
+        snapshot.count = total;
+        if (total > 0) {
+            snapshot.meanMs = totalMicros.get() / 1000.0 / Math.max(1, count.get());
+            snapshot.maxMs = maxMicros.get() / 1000.0;
+            // Bucket bounds can exceed the largest recorded value
+            snapshot.p50Ms = Math.min(percentile(buckets, total, 0.50), snapshot.maxMs);
+            snapshot.p95Ms = Math.min(percentile(buckets, total, 0.95), snapshot.maxMs);
+            snapshot.p99Ms = Math.min(percentile(buckets, total, 0.99), snapshot.maxMs);
+        }
+        return snapshot;
+    }
+
+    private static double percentile(long[] buckets, long total, double p) {
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return upperBound(i) / 1000.0;
+            }
+        }
+        return upperBound(buckets.length - 1) / 1000.0;
+    }
+
+    /**
+     * Point-in-time latency summary in milliseconds.
+     */
+    public static class Snapshot {
+        public long count;
+        public double meanMs;
+        public double p50Ms;
+        public double p95Ms;
+        public double p99Ms;
+        public double maxMs;
+    }
+}
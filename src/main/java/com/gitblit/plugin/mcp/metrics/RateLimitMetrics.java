@@ -0,0 +1,85 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide counters of request admission.
+ */
+public class RateLimitMetrics {
+
+    /**
+     * Why a request was turned away.
+     */
+    public enum Reason {
+        USER_RATE, GLOBAL_RATE, USER_CONCURRENCY, GLOBAL_CONCURRENCY
+    }
+
+    private static final RateLimitMetrics instance = new RateLimitMetrics();
+
+    public static RateLimitMetrics get() {
+        return instance;
+    }
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong[] rejected = new AtomicLong[Reason.values().length];
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger trackedClients = new AtomicInteger();
+
+    private RateLimitMetrics() {
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = new AtomicLong();
+        }
+    }
+
+    public void admitted() {
+        admitted.incrementAndGet();
+        inFlight.incrementAndGet();
+    }
+
+    public void released() {
+        inFlight.decrementAndGet();
+    }
+
+    public void rejected(Reason reason) {
+        rejected[reason.ordinal()].incrementAndGet();
+    }
+
+    /**
+     * Number of clients that currently have limiter state.
+     */
+    public void setTrackedClients(int count) {
+        trackedClients.set(count);
+    }
+
+    /**
+     * Snapshot the counters.
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.admitted = admitted.get();
+        snapshot.inFlight = inFlight.get();
+        snapshot.trackedClients = trackedClients.get();
+        snapshot.rejectedUserRate = rejected[Reason.USER_RATE.ordinal()].get();
+        snapshot.rejectedGlobalRate = rejected[Reason.GLOBAL_RATE.ordinal()].get();
+        snapshot.rejectedUserConcurrency = rejected[Reason.USER_CONCURRENCY.ordinal()].get();
+        snapshot.rejectedGlobalConcurrency = rejected[Reason.GLOBAL_CONCURRENCY.ordinal()].get();
+        return snapshot;
+    }
+
+    /**
+     * Point-in-time admission counters.
+     */
+    public static class Snapshot {
+        public long admitted;
+        public int inFlight;
+        public int trackedClients;
+        public long rejectedUserRate;
+        public long rejectedGlobalRate;
+        public long rejectedUserConcurrency;
+        public long rejectedGlobalConcurrency;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Phase timings of a single request.
+ *
+ * Phases are laps: {@link #mark} charges the time since the previous mark
+ * (or the start of the request) to the named phase. Handlers mark the end
+ * of each of their phases; the filter marks authentication before the
+ * handler runs and serialization after it returns.
+ */
+public class RequestMetrics {
+
+    private static final String ATTRIBUTE = RequestMetrics.class.getName();
+
+    private static final RequestMetrics NONE = new RequestMetrics();
+
+    /**
+     * Get the metrics of a request. Returns a discarding instance for
+     * requests that are not being measured.
+     */
+    public static RequestMetrics of(HttpServletRequest request) {
+        Object metrics = request.getAttribute(ATTRIBUTE);
+        return metrics instanceof RequestMetrics ? (RequestMetrics) metrics : NONE;
+    }
+
+    /**
+     * Start measuring a request.
+     */
+    public static RequestMetrics start(HttpServletRequest request) {
+        RequestMetrics metrics = new RequestMetrics();
+        request.setAttribute(ATTRIBUTE, metrics);
+        return metrics;
+    }
+
+    private final long start = System.nanoTime();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private long last = start;
+    private String endpoint;
+
+    private RequestMetrics() {
+    }
+
+    /**
+     * End the current phase and charge its time to the given name.
+     */
+    public void mark(String phase) {
+        if (this == NONE) {
+            return;
+        }
+        long now = System.nanoTime();
+        Long previous = phases.get(phase);
+        phases.put(phase, (previous != null ? previous : 0L) + (now - last));
+        last = now;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    long getElapsed() {
+        return last - start;
+    }
+
+    Map<String, Long> getPhases() {
+        return phases;
+    }
+}
@@ -0,0 +1,19 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.model;
+
+import java.util.List;
+
+import com.gitblit.plugin.mcp.cache.CacheStats;
+
+/**
+ * Response DTO for /cache/stats endpoint.
+ */
+public class CacheStatsResponse {
+    public List<CacheStats> caches;
+
+    public CacheStatsResponse(List<CacheStats> caches) {
+        this.caches = caches;
+    }
+}
@@ -0,0 +1,21 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.model;
+
+import java.util.List;
+
+/**
+ * Request body DTO for /file/batch endpoint.
+ */
+public class FileBatchRequest {
+    public List<Item> items;
+
+    public static class Item {
+        public String repo;
+        public String path;
+        public String revision;
+        public Integer startLine;
+        public Integer endLine;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.model;
+
+import java.util.List;
+
+/**
+ * Response DTO for /file/batch endpoint.
+ * Results are in request order; each has either content or an error.
+ */
+public class FileBatchResponse {
+    public List<Result> results;
+
+    public FileBatchResponse(List<Result> results) {
+        this.results = results;
+    }
+
+    public static class Result {
+        public String repo;
+        public String path;
+        public String content;
+        public Integer nextStartLine;  // set when a large file's window was cut short
+        public Boolean lineTruncated;  // true when a line longer than the window budget was cut; omitted otherwise
+        public String error;
+        public Integer status;  // HTTP status the item would have had as a single /file request
+
+        public Result(String repo, String path) {
+            this.repo = repo;
+            this.path = path;
+        }
+    }
+}
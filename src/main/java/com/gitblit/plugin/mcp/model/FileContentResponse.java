@@ -8,6 +8,8 @@ package com.gitblit.plugin.mcp.model;
  */
 public class FileContentResponse {
     public String content;
+    public Integer nextStartLine;  // set when a large file's window was cut short
+    public Boolean lineTruncated;  // true when a line longer than the window budget was cut; omitted otherwise
 
     public FileContentResponse(String content) {
         this.content = content;
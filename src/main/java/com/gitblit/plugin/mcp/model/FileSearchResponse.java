@@ -7,12 +7,15 @@ import java.util.List;
 
 /**
  * Response DTO for /search/files endpoint.
+ * FileSearchHandler streams this shape field by field; keep the two in sync.
  */
 public class FileSearchResponse {
     public String query;
     public int totalCount;
+    public boolean totalCountExact;  // false when pathPattern filtering stopped at the scan limit
     public boolean limitHit;
     public List<FileSearchResult> results;
+    public Boolean partial;          // true when the request deadline cut the search short; omitted otherwise
 
     public static class FileSearchResult {
         public String repository;
@@ -20,6 +23,26 @@ public class FileSearchResponse {
         public String branch;
         public String commitId;
         public List<Chunk> chunks;
+        /** Positions of the query terms in the file; omitted when not computed */
+        public List<Match> matches;
+        /** True when the file has more term positions than are listed; omitted otherwise */
+        public Boolean matchesTruncated;
+        /** True when the context chunk was not ready in time; omitted otherwise */
+        public Boolean chunkTimedOut;
+        /** True when chunks were left out by the maxChunks limit or the response budget; omitted otherwise */
+        public Boolean chunksTruncated;
+    }
+
+    public static class Match {
+        public int line;            // 1-based
+        public int startColumn;     // 0-based character offset in the line
+        public int endColumn;       // exclusive
+
+        public Match(int line, int startColumn, int endColumn) {
+            this.line = line;
+            this.startColumn = startColumn;
+            this.endColumn = endColumn;
+        }
     }
 
     public static class Chunk {
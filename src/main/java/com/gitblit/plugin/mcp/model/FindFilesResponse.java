@@ -7,11 +7,16 @@ import java.util.List;
 
 /**
  * Response DTO for /find endpoint.
+ * FindFilesHandler streams this shape field by field; keep the two in sync.
  */
 public class FindFilesResponse {
     public String pattern;
     public int totalCount;
+    public boolean totalCountExact;  // false when exactCount=false stopped the walk early
     public boolean limitHit;
+    public String nextCursor;        // pass as 'after' to fetch the next page
+    public Boolean cursorStale;      // true when the cursor's repository changed since it was issued; omitted otherwise
+    public Boolean partial;          // true when the deadline stopped the walk; omitted otherwise
     public List<FindFilesResult> results;
 
     public static class FindFilesResult {
@@ -0,0 +1,19 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.model;
+
+import java.util.Map;
+
+import com.gitblit.plugin.mcp.metrics.CompressionMetrics;
+import com.gitblit.plugin.mcp.metrics.EndpointMetrics;
+import com.gitblit.plugin.mcp.metrics.RateLimitMetrics;
+
+/**
+ * Response DTO for /metrics endpoint.
+ */
+public class MetricsResponse {
+    public CompressionMetrics.Snapshot compression;
+    public RateLimitMetrics.Snapshot rateLimits;
+    public Map<String, EndpointMetrics.Snapshot> endpoints;
+}
@@ -0,0 +1,37 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.model;
+
+import java.util.List;
+
+/**
+ * Response DTO for /search/regex endpoint.
+ */
+public class RegexSearchResponse {
+    public String pattern;
+    public int candidateCount;  // files selected by the trigram index before verification
+    public boolean limitHit;
+    public List<RegexSearchResult> results;
+    public Boolean partial;     // true when the deadline stopped verification or a repository had no index; omitted otherwise
+    public List<String> indexing;  // repositories whose index is being updated; searched with their previous index, if any
+
+    public static class RegexSearchResult {
+        public String repository;
+        public String path;
+        public String branch;
+        public String commitId;
+        public List<LineMatch> matches;
+        public boolean matchesTruncated;
+    }
+
+    public static class LineMatch {
+        public int line;            // 1-based
+        public String text;
+
+        public LineMatch(int line, String text) {
+            this.line = line;
+            this.text = text;
+        }
+    }
+}
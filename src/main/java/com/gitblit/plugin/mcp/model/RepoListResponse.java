@@ -12,6 +12,7 @@ public class RepoListResponse {
     public List<RepoInfo> repositories;
     public int totalCount;
     public boolean limitHit;
+    public String nextCursor;  // pass as 'after' to fetch the next page
 
     public static class RepoInfo {
         public String name;
@@ -0,0 +1,316 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import com.gitblit.plugin.mcp.metrics.CompressionMetrics;
+
+/**
+ * Response wrapper that compresses the body with the encoding negotiated
+ * from the request's Accept-Encoding header.
+ *
+ * The body is compressed as it is written. Only the first {@code minSize}
+ * bytes are held back to decide whether compressing is worthwhile; bodies
+ * that end below that size are sent as is. An explicit flush before then
+ * commits to compression so that streamed responses reach the client early.
+ *
+ * Output is blocking only: the compressor may write to the wrapped stream
+ * several times per call, which non-blocking output does not allow, so a
+ * {@link WriteListener} cannot be registered. The caller sets
+ * {@code Vary: Accept-Encoding}, as responses that are not compressed vary
+ * by it too.
+ */
+public class CompressingResponse extends HttpServletResponseWrapper {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    private final String encoding;
+    private final int minSize;
+    private CompressingStream stream;
+    private PrintWriter writer;
+
+    /**
+     * @param encoding {@link #GZIP} or {@link #DEFLATE}
+     * @param minSize smallest body that is compressed
+     */
+    public CompressingResponse(HttpServletResponse response, String encoding, int minSize) {
+        super(response);
+        this.encoding = encoding;
+        this.minSize = minSize;
+    }
+
+    /**
+     * Pick the preferred encoding the client accepts, or null for none.
+     * gzip wins over deflate; codings with q=0 are not accepted.
+     */
+    public static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String coding = params[0].trim().toLowerCase();
+            if (isRefused(params)) {
+                continue;
+            }
+            if (GZIP.equals(coding) || "*".equals(coding)) {
+                gzip = true;
+            } else if (DEFLATE.equals(coding)) {
+                deflate = true;
+            }
+        }
+        return gzip ? GZIP : deflate ? DEFLATE : null;
+    }
+
+    private static boolean isRefused(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2)) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        if (stream == null) {
+            stream = new CompressingStream();
+        }
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (stream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            stream = new CompressingStream();
+            writer = new PrintWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        // The length of the encoded body is not known up front
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        // The length of the encoded body is not known up front
+    }
+
+    /**
+     * Discard the body written so far, including what the compressor holds.
+     */
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        if (stream != null) {
+            stream.reset();
+            if (writer != null) {
+                writer = new PrintWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        } else if (stream != null) {
+            stream.flush();
+        }
+        super.flushBuffer();
+    }
+
+    /**
+     * Complete the body if the handler did not close it. Must be called
+     * once the request has been handled.
+     */
+    public void finish() throws IOException {
+        if (writer != null) {
+            writer.close();
+        } else if (stream != null) {
+            stream.close();
+        }
+    }
+
+    /**
+     * Output stream that buffers up to minSize bytes, then switches to
+     * compressing straight into the wrapped response.
+     */
+    private class CompressingStream extends ServletOutputStream {
+        private byte[] pending = new byte[minSize];
+        private int pendingCount;
+        private OutputStream target;      // set once decided
+        private CountingStream counter;
+        private long written;
+        private boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            written += len;
+            if (target == null) {
+                if (pendingCount + len <= pending.length) {
+                    System.arraycopy(b, off, pending, pendingCount, len);
+                    pendingCount += len;
+                    return;
+                }
+                startCompressing();
+            }
+            target.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (closed) {
+                return;
+            }
+            if (target == null && pendingCount > 0) {
+                startCompressing();
+            }
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (target == null) {
+                // Too small to be worth compressing
+                OutputStream out = CompressingResponse.super.getOutputStream();
+                out.write(pending, 0, pendingCount);
+                out.close();
+                CompressionMetrics.get().record(written, written, false);
+            } else {
+                target.close();
+                CompressionMetrics.get().record(written, counter.count, true);
+            }
+            pending = null;
+        }
+
+        /**
+         * Start the body over after the wrapped response discarded its
+         * buffer. A body that was already being compressed gets a fresh
+         * compressor, as the Content-Encoding header is already set.
+         */
+        void reset() {
+            written = 0;
+            pendingCount = 0;
+            if (target == null) {
+                return;
+            }
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+            try {
+                counter = new CountingStream(response.getOutputStream());
+                target = GZIP.equals(encoding)
+                    ? new GZIPOutputStream(counter, 8192, true)
+                    : new DeflaterOutputStream(counter, true);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot restart compression", e);
+            }
+        }
+
+        private void startCompressing() throws IOException {
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+            response.setHeader("Content-Encoding", encoding);
+
+            counter = new CountingStream(response.getOutputStream());
+            target = GZIP.equals(encoding)
+                ? new GZIPOutputStream(counter, 8192, true)
+                : new DeflaterOutputStream(counter, true);
+            target.write(pending, 0, pendingCount);
+            pending = null;
+        }
+
+        /**
+         * Always true: writes block until the wrapped stream takes them.
+         */
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        /**
+         * Not supported; see the class comment.
+         *
+         * @throws IllegalStateException always
+         */
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            throw new IllegalStateException("Compressed responses support blocking output only");
+        }
+    }
+
+    /**
+     * Pass-through stream that counts the bytes sent to the client.
+     */
+    private static class CountingStream extends OutputStream {
+        private final OutputStream out;
+        long count;
+
+        CountingStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque pagination cursors.
+ *
+ * A cursor is a fixed number of string fields joined with NUL, which cannot
+ * occur in repository names or Git paths, and encoded as URL-safe Base64.
+ */
+public class Cursor {
+
+    private static final char SEPARATOR = '\0';
+
+    /**
+     * Encode cursor fields into an opaque token.
+     */
+    public static String encode(String... fields) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(fields[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token produced by {@link #encode}.
+     *
+     * @return the fields, or null if the token is malformed or has the wrong number of fields
+     */
+    public static String[] decode(String token, int fieldCount) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        String[] fields = decoded.split(String.valueOf(SEPARATOR), -1);
+        return fields.length == fieldCount ? fields : null;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.util;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.gitblit.IStoredSettings;
+import com.gitblit.utils.StringUtils;
+
+/**
+ * Time budget of a single request.
+ *
+ * The filter starts the deadline when a request arrives, so time spent
+ * waiting for a worker counts against it. Handlers that walk trees, loop
+ * over repositories or load file contents check it as they go and, once
+ * it has passed, stop and return what they have with {@code partial: true}.
+ * Clients can ask for a shorter budget with the {@code timeoutMs}
+ * parameter, up to the configured maximum.
+ */
+public class Deadline {
+
+    public static final String SETTING_TIMEOUT = "mcp.request.timeoutMs";
+    public static final String SETTING_MAX_TIMEOUT = "mcp.request.maxTimeoutMs";
+    private static final int DEFAULT_TIMEOUT_MS = 30000;
+    private static final int DEFAULT_MAX_TIMEOUT_MS = 120000;
+
+    private static final String PARAMETER = "timeoutMs";
+    private static final String ATTRIBUTE = Deadline.class.getName();
+
+    private static final Deadline NONE = new Deadline(0);
+
+    /**
+     * Get the deadline of a request. Returns one that never expires for
+     * requests without a deadline.
+     */
+    public static Deadline of(HttpServletRequest request) {
+        Object deadline = request.getAttribute(ATTRIBUTE);
+        return deadline instanceof Deadline ? (Deadline) deadline : NONE;
+    }
+
+    /**
+     * Start the deadline of a request from the settings and its
+     * {@code timeoutMs} parameter.
+     */
+    public static Deadline start(HttpServletRequest request, IStoredSettings settings) {
+        long timeoutMs = settings.getInteger(SETTING_TIMEOUT, DEFAULT_TIMEOUT_MS);
+        long maxTimeoutMs = settings.getInteger(SETTING_MAX_TIMEOUT, DEFAULT_MAX_TIMEOUT_MS);
+        String param = request.getParameter(PARAMETER);
+        if (!StringUtils.isEmpty(param)) {
+            try {
+                long requested = Long.parseLong(param);
+                if (requested > 0) {
+                    timeoutMs = requested;
+                }
+            } catch (NumberFormatException e) {
+                // Keep the configured timeout
+            }
+        }
+        if (maxTimeoutMs > 0 && (timeoutMs <= 0 || timeoutMs > maxTimeoutMs)) {
+            timeoutMs = maxTimeoutMs;
+        }
+        Deadline deadline = timeoutMs > 0
+            ? new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs))
+            : NONE;
+        request.setAttribute(ATTRIBUTE, deadline);
+        return deadline;
+    }
+
+    private final long nanoTime;  // unused for NONE
+
+    private Deadline(long nanoTime) {
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Whether the deadline has passed. Cheap enough to call per tree entry.
+     */
+    public boolean isExpired() {
+        return this != NONE && System.nanoTime() - nanoTime >= 0;
+    }
+
+    /**
+     * Nanoseconds until the deadline; {@link Long#MAX_VALUE} if there is none.
+     */
+    public long remainingNanos() {
+        return this == NONE ? Long.MAX_VALUE : nanoTime - System.nanoTime();
+    }
+
+    /**
+     * The earlier of this deadline and another absolute {@link System#nanoTime()} deadline.
+     */
+    public long earliest(long otherNanoTime) {
+        if (this == NONE || otherNanoTime - nanoTime < 0) {
+            return otherNanoTime;
+        }
+        return nanoTime;
+    }
+}
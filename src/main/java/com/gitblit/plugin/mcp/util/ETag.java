@@ -0,0 +1,137 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.gitblit.models.RepositoryModel;
+import com.gitblit.models.UserModel;
+
+/**
+ * Entity tags for responses that are fully determined by resolved object
+ * ids, and the matching If-None-Match handling.
+ *
+ * Tags are weak: the same response is sent gzip, deflate or identity
+ * encoded, and those representations must not share a strong tag.
+ *
+ * A tag hashes the endpoint, the normalized request parameters, the user
+ * and an access fingerprint, and the ids the response was built from.
+ * Handlers compute it right after resolving their revision, before any
+ * tree walk or blob load, so an unchanged resource costs a ref lookup.
+ */
+public class ETag {
+
+    private final MessageDigest digest;
+    private String tag;
+
+    private ETag(String endpoint, HttpServletRequest request, UserModel user) {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        add(endpoint);
+
+        // Parameters sorted by name so that their order does not matter
+        Map<String, String[]> params = new TreeMap<>(request.getParameterMap());
+        for (Map.Entry<String, String[]> param : params.entrySet()) {
+            add(param.getKey());
+            for (String value : param.getValue()) {
+                add(value);
+            }
+        }
+        add(user.username);
+    }
+
+    /**
+     * Start a tag for a request.
+     */
+    public static ETag of(String endpoint, HttpServletRequest request, UserModel user) {
+        return new ETag(endpoint, request, user);
+    }
+
+    /**
+     * Add a value the response depends on, such as a commit id or an
+     * access permission. A null value is recorded as absent.
+     */
+    public ETag add(String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+        return this;
+    }
+
+    /**
+     * Add the user's access permission on a repository.
+     */
+    public ETag addAccess(UserModel user, RepositoryModel repository) {
+        return add(user.getRepositoryPermission(repository).permission.name());
+    }
+
+    /**
+     * Answer 304 if the client already has this version, without sending
+     * the tag otherwise. Call {@link #send} once the response is known to
+     * be complete and successful, so that errors and partial results are
+     * never tagged.
+     *
+     * @return true if a 304 was sent and the handler must stop
+     */
+    public boolean checkNotModified(HttpServletRequest request, HttpServletResponse response) {
+        if (matches(request.getHeader("If-None-Match"), toString())) {
+            send(response);
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Send the tag with the response.
+     */
+    public void send(HttpServletResponse response) {
+        response.setHeader("ETag", toString());
+    }
+
+    private static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            // If-None-Match uses weak comparison
+            if (candidate.equals("*") || opaque(candidate).equals(opaque(tag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * The weak, quoted tag. No values can be added once it has been computed.
+     */
+    @Override
+    public String toString() {
+        if (tag == null) {
+            byte[] hash = digest.digest();
+            StringBuilder quoted = new StringBuilder(4 + hash.length * 2).append("W/\"");
+            for (byte b : hash) {
+                quoted.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            tag = quoted.append('"').toString();
+        }
+        return tag;
+    }
+}
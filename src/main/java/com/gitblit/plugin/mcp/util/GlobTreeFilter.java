@@ -0,0 +1,56 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.util;
+
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Tree filter that includes files matching a {@link PathGlob} and only
+ * descends into subtrees that can still contain a match. With a deadline,
+ * the walk ends once it has passed.
+ */
+public class GlobTreeFilter extends TreeFilter {
+
+    private final PathGlob glob;
+    private final Deadline deadline;
+
+    public GlobTreeFilter(PathGlob glob) {
+        this(glob, null);
+    }
+
+    public GlobTreeFilter(PathGlob glob, Deadline deadline) {
+        this.glob = glob;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public boolean include(TreeWalk walker) {
+        if (deadline != null && deadline.isExpired()) {
+            throw StopWalkException.INSTANCE;
+        }
+        String path = walker.getPathString();
+        if (walker.isSubtree()) {
+            return glob.mayMatchBelow(path);
+        }
+        return glob.matches(path);
+    }
+
+    @Override
+    public boolean shouldBeRecursive() {
+        return true;
+    }
+
+    @Override
+    public TreeFilter clone() {
+        // Stateless, safe to share
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "GLOB(" + glob.getGlob() + ")";
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Incremental JSON response body, obtained from {@link ResponseWriter#startJson}.
+ *
+ * Lets a handler write the envelope of a response by hand and serialize
+ * each result DTO as soon as it is available, so that neither the whole
+ * DTO graph nor its serialized form has to be held in memory. Null values
+ * are omitted, as with {@link ResponseWriter#writeJson}.
+ *
+ * Closing a stream whose document is incomplete, as when a handler fails
+ * part way, leaves the servlet stream open and unflushed so that the
+ * failure can still be answered with an error. Once {@link #flush} has
+ * sent part of the document, that is no longer possible.
+ */
+public class JsonStream implements Closeable {
+
+    private final Gson gson;
+    private final JsonWriter writer;
+    private int depth;
+
+    JsonStream(Gson gson, JsonWriter writer) {
+        this.gson = gson;
+        this.writer = writer;
+    }
+
+    public JsonStream beginObject() throws IOException {
+        writer.beginObject();
+        depth++;
+        return this;
+    }
+
+    public JsonStream endObject() throws IOException {
+        writer.endObject();
+        depth--;
+        return this;
+    }
+
+    public JsonStream beginArray(String name) throws IOException {
+        writer.name(name).beginArray();
+        depth++;
+        return this;
+    }
+
+    public JsonStream endArray() throws IOException {
+        writer.endArray();
+        depth--;
+        return this;
+    }
+
+    public JsonStream field(String name, String value) throws IOException {
+        writer.name(name).value(value);
+        return this;
+    }
+
+    public JsonStream field(String name, long value) throws IOException {
+        writer.name(name).value(value);
+        return this;
+    }
+
+    public JsonStream field(String name, boolean value) throws IOException {
+        writer.name(name).value(value);
+        return this;
+    }
+
+    /**
+     * Serialize a DTO as the next array element.
+     */
+    public JsonStream element(Object value) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else {
+            gson.toJson(value, value.getClass(), writer);
+        }
+        return this;
+    }
+
+    /**
+     * Send what has been written so far to the client.
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Finish the response and flush it to the client. Does nothing if the
+     * document is incomplete.
+     */
+    @Override
+    public void close() throws IOException {
+        if (depth == 0) {
+            writer.close();
+        }
+    }
+}
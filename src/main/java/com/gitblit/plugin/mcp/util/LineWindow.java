@@ -0,0 +1,190 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import com.gitblit.plugin.mcp.cache.BlobCache;
+
+/**
+ * Reads a window of numbered lines from a stream without materializing
+ * the whole content.
+ *
+ * Lines before the window are only counted; lines inside it are kept as
+ * bytes, decoded together with the charset {@link BlobCache} would pick
+ * for them, and rendered as {@code "N: text\n"}, like /file does. Memory
+ * stays bounded by the window budget however large the stream is: the
+ * window ends early once the budget is used, and a single overlong line is
+ * cut.
+ */
+public class LineWindow {
+
+    /** Bytes inspected to tell binary from text content */
+    public static final int BINARY_CHECK_SIZE = 8000;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Rendered lines of the window */
+    public final String content;
+    /** First line not included because the budget ran out, or 0 if the window is complete */
+    public final int nextLine;
+    /** Whether a line longer than the budget was cut */
+    public final boolean lineTruncated;
+
+    private LineWindow(String content, int nextLine, boolean lineTruncated) {
+        this.content = content;
+        this.nextLine = nextLine;
+        this.lineTruncated = lineTruncated;
+    }
+
+    /**
+     * Check the head of some content for null bytes, the usual binary indicator.
+     */
+    public static boolean isBinary(byte[] head, int length) {
+        for (int i = 0; i < Math.min(length, BINARY_CHECK_SIZE); i++) {
+            if (head[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read the lines in [startLine, endLine], 1-indexed and inclusive.
+     *
+     * @param head bytes already read from the start of the content, e.g. for
+     *             a binary check; they are processed before the stream
+     * @param maxBytes budget for the rendered window
+     */
+    public static LineWindow read(byte[] head, int headLength, InputStream in,
+                                  int startLine, int endLine, int maxBytes) throws IOException {
+        Scanner scanner = new Scanner(startLine, endLine, maxBytes);
+        if (scanner.feed(head, headLength)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                if (!scanner.feed(buffer, n)) {
+                    break;
+                }
+            }
+        }
+        return scanner.finish();
+    }
+
+    /**
+     * Line state machine fed with consecutive chunks of the content.
+     */
+    private static class Scanner {
+        private final int startLine;
+        private final int endLine;
+        private final int maxBytes;
+        private final ByteArrayOutputStream window = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream current = new ByteArrayOutputStream();
+        private int line = 1;
+        private int used;
+        private int nextLine;
+        private boolean lineCut;
+        private boolean cut;
+        private boolean done;
+
+        Scanner(int startLine, int endLine, int maxBytes) {
+            this.startLine = startLine;
+            this.endLine = endLine;
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * @return false once the window is complete
+         */
+        boolean feed(byte[] bytes, int length) {
+            int i = 0;
+            while (i < length && !done) {
+                if (line < startLine) {
+                    // Skip to the next line break without decoding
+                    while (i < length && bytes[i] != '\n') {
+                        i++;
+                    }
+                    if (i < length) {
+                        line++;
+                        i++;
+                    }
+                    continue;
+                }
+
+                int lineStart = i;
+                while (i < length && bytes[i] != '\n') {
+                    i++;
+                }
+                append(bytes, lineStart, i - lineStart);
+                if (i < length) {
+                    i++;
+                    emit();
+                }
+            }
+            return !done;
+        }
+
+        LineWindow finish() {
+            if (!done && line >= startLine) {
+                // Last line has no terminator (empty if the content ends with one)
+                emit();
+            }
+
+            // Decode the window as a whole, as a cached blob is decoded
+            byte[] raw = window.toByteArray();
+            Charset charset = BlobCache.detectCharset(raw);
+            StringBuilder out = new StringBuilder(raw.length + 16 * (line - startLine + 1));
+            int number = startLine;
+            int start = 0;
+            for (int i = 0; i < raw.length; i++) {
+                if (raw[i] == '\n') {
+                    out.append(number++).append(": ").append(new String(raw, start, i - start, charset)).append('\n');
+                    start = i + 1;
+                }
+            }
+            return new LineWindow(out.toString(), nextLine, cut);
+        }
+
+        private void append(byte[] bytes, int offset, int length) {
+            // Cut overlong lines instead of buffering them whole
+            if (lineCut) {
+                return;
+            }
+            int room = Math.max(0, maxBytes - current.size());
+            if (length > room) {
+                // Do not split a UTF-8 sequence at the cut
+                while (room > 0 && (bytes[offset + room] & 0xC0) == 0x80) {
+                    room--;
+                }
+                lineCut = true;
+                length = room;
+            }
+            current.write(bytes, offset, length);
+        }
+
+        private void emit() {
+            int size = current.size() + 16;
+            if (used > 0 && used + size > maxBytes) {
+                // Budget used up; the caller continues from here
+                nextLine = line;
+                done = true;
+                return;
+            }
+            window.write(current.toByteArray(), 0, current.size());
+            window.write('\n');
+            current.reset();
+            cut |= lineCut;
+            lineCut = false;
+            used += size;
+            if (line >= endLine) {
+                done = true;
+                return;
+            }
+            line++;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.jgit.internal.storage.file.ObjectDirectory;
+import org.eclipse.jgit.internal.storage.file.PackFile;
+import org.eclipse.jgit.lib.ObjectDatabase;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Orders object ids by their position in the repository's pack files, so
+ * that loading them reads each pack front to back instead of seeking around.
+ *
+ * JGit has no public API for pack offsets; this relies on the file-backed
+ * object database and leaves the order untouched for any other storage.
+ */
+public class PackOrder {
+
+    private PackOrder() {
+    }
+
+    /**
+     * Return the given ids sorted by (pack, offset). Objects that are not
+     * packed, e.g. loose objects, keep their relative order at the end.
+     */
+    public static List<ObjectId> sort(Repository repository, Collection<ObjectId> ids) {
+        List<ObjectId> sorted = new ArrayList<>(ids);
+
+        ObjectDatabase odb = repository.getObjectDatabase();
+        if (!(odb instanceof ObjectDirectory) || sorted.size() < 2) {
+            return sorted;
+        }
+
+        final List<Position> positions = new ArrayList<>(sorted.size());
+        try {
+            List<PackFile> packs = new ArrayList<>(((ObjectDirectory) odb).getPacks());
+            for (ObjectId id : sorted) {
+                positions.add(locate(packs, id));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Pack list changed under us (gc, repack); order does not affect correctness
+            return sorted;
+        }
+
+        Collections.sort(positions, new Comparator<Position>() {
+            @Override
+            public int compare(Position a, Position b) {
+                if (a.pack != b.pack) {
+                    return a.pack < b.pack ? -1 : 1;
+                }
+                return Long.compare(a.offset, b.offset);
+            }
+        });
+
+        sorted.clear();
+        for (Position position : positions) {
+            sorted.add(position.id);
+        }
+        return sorted;
+    }
+
+    private static Position locate(List<PackFile> packs, ObjectId id) throws IOException {
+        for (int i = 0; i < packs.size(); i++) {
+            long offset = packs.get(i).getIndex().findOffset(id);
+            if (offset >= 0) {
+                return new Position(id, i, offset);
+            }
+        }
+        return new Position(id, Integer.MAX_VALUE, 0);
+    }
+
+    private static class Position {
+        final ObjectId id;
+        final int pack;
+        final long offset;
+
+        Position(ObjectId id, int pack, long offset) {
+            this.id = id;
+            this.pack = pack;
+            this.offset = offset;
+        }
+    }
+}
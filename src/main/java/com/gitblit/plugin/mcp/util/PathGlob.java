@@ -0,0 +1,174 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.util;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiled glob pattern for repository paths.
+ * Supports:
+ *   * - matches any characters except /
+ *   ** - matches any characters including /
+ *   ? - matches a single character except /
+ *
+ * Besides full-path matching, a glob can tell whether anything below a
+ * directory could still match, which lets tree walks skip whole subtrees.
+ */
+public class PathGlob {
+
+    private final String glob;
+    private final Pattern pattern;
+    private final String literalPrefix;
+    private final Pattern[] segments;   // null entry = segment containing **
+
+    private PathGlob(String glob) throws PatternSyntaxException {
+        this.glob = glob;
+        this.pattern = Pattern.compile(toRegex(glob, true));
+        this.literalPrefix = literalPrefix(glob);
+
+        String[] parts = glob.split("/", -1);
+        this.segments = new Pattern[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            if (!parts[i].contains("**")) {
+                segments[i] = Pattern.compile(toRegex(parts[i], false));
+            }
+        }
+    }
+
+    /**
+     * Compile a glob pattern.
+     */
+    public static PathGlob compile(String glob) throws PatternSyntaxException {
+        return new PathGlob(glob);
+    }
+
+    public String getGlob() {
+        return glob;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Leading part of the glob before the first wildcard. Every matching
+     * path starts with it.
+     */
+    public String getLiteralPrefix() {
+        return literalPrefix;
+    }
+
+    /**
+     * Check whether a file path matches the glob.
+     */
+    public boolean matches(String path) {
+        return pattern.matcher(path).matches();
+    }
+
+    /**
+     * Check whether any path below the given directory could match.
+     * Errs on the side of true.
+     */
+    public boolean mayMatchBelow(String directory) {
+        String[] dirs = directory.split("/");
+        for (int i = 0; i < dirs.length; i++) {
+            if (segments[i] == null) {
+                // ** can absorb any remaining directories
+                return true;
+            }
+            if (i >= segments.length - 1) {
+                // Files below this directory have more segments than the glob
+                return false;
+            }
+            if (!segments[i].matcher(dirs[i]).matches()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Narrow a sorted path array to the range that can contain matches,
+     * using the literal prefix.
+     *
+     * @return {fromIndex, toIndex} into the array
+     */
+    public int[] candidateRange(String[] sortedPaths) {
+        if (literalPrefix.isEmpty()) {
+            return new int[] { 0, sortedPaths.length };
+        }
+        int from = insertionPoint(sortedPaths, literalPrefix);
+        int to = from;
+        while (to < sortedPaths.length && sortedPaths[to].startsWith(literalPrefix)) {
+            to++;
+        }
+        return new int[] { from, to };
+    }
+
+    private static int insertionPoint(String[] sortedPaths, String key) {
+        int index = Arrays.binarySearch(sortedPaths, key);
+        return index >= 0 ? index : -(index + 1);
+    }
+
+    private static String literalPrefix(String glob) {
+        int i = 0;
+        while (i < glob.length() && glob.charAt(i) != '*' && glob.charAt(i) != '?') {
+            i++;
+        }
+        return glob.substring(0, i);
+    }
+
+    /**
+     * Convert a glob to a regular expression. Outside of anchored full-path
+     * mode the result is used per path segment, where ** never occurs.
+     */
+    private static String toRegex(String glob, boolean anchored) {
+        StringBuilder regex = new StringBuilder();
+        if (anchored) {
+            regex.append("^");
+        }
+
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+
+            if (c == '*') {
+                // Check for **
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    // ** matches anything including /
+                    regex.append(".*");
+                    i += 2;
+                    // Skip trailing / after ** (e.g., **/ matches any path prefix)
+                    if (i < glob.length() && glob.charAt(i) == '/') {
+                        i++;
+                    }
+                } else {
+                    // * matches anything except /
+                    regex.append("[^/]*");
+                    i++;
+                }
+            } else if (c == '?') {
+                // ? matches single char except /
+                regex.append("[^/]");
+                i++;
+            } else if (c == '.' || c == '(' || c == ')' || c == '[' || c == ']' ||
+                       c == '{' || c == '}' || c == '\\' || c == '^' || c == '$' ||
+                       c == '|' || c == '+') {
+                // Escape regex special chars
+                regex.append("\\").append(c);
+                i++;
+            } else {
+                regex.append(c);
+                i++;
+            }
+        }
+
+        if (anchored) {
+            regex.append("$");
+        }
+        return regex.toString();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Utility class for reading JSON request bodies.
+ */
+public class RequestReader {
+
+    private static final Gson gson = new Gson();
+
+    /**
+     * Parse the request body as JSON.
+     *
+     * @param maxBytes largest accepted body, in bytes as sent
+     * @return the parsed body, or null if it is empty, too large or not valid JSON
+     */
+    public static <T> T readJson(HttpServletRequest request, Class<T> type, int maxBytes) throws IOException {
+        long length = request.getContentLengthLong();
+        if (length > maxBytes) {
+            return null;
+        }
+
+        // Count bytes rather than chars: a request without a Content-Length may
+        // still be chunked past the limit
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = request.getInputStream()) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                body.write(buffer, 0, n);
+                if (body.size() > maxBytes) {
+                    return null;
+                }
+            }
+        }
+
+        try {
+            return gson.fromJson(new String(body.toByteArray(), StandardCharsets.UTF_8), type);
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+}
@@ -3,20 +3,33 @@
  */
 package com.gitblit.plugin.mcp.util;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 
 import javax.servlet.http.HttpServletResponse;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.gitblit.plugin.mcp.model.ErrorResponse;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Utility class for writing JSON responses.
+ *
+ * Responses are serialized straight into a buffered UTF-8 writer on the
+ * servlet output stream rather than built as a String first.
  */
 public class ResponseWriter {
 
+    private static final Logger log = LoggerFactory.getLogger(ResponseWriter.class);
+
+    private static final int BUFFER_SIZE = 8192;
+
     private static final Gson gson = new GsonBuilder()
         .setDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'")
         .create();
@@ -25,27 +38,48 @@ public class ResponseWriter {
      * Write a successful JSON response.
      */
     public static void writeJson(HttpServletResponse response, Object data) throws IOException {
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-        response.setStatus(HttpServletResponse.SC_OK);
+        write(response, HttpServletResponse.SC_OK, data);
+    }
 
-        PrintWriter writer = response.getWriter();
-        writer.write(gson.toJson(data));
-        writer.flush();
+    /**
+     * Start a successful JSON response that the caller writes incrementally.
+     * The caller must close the returned stream.
+     */
+    public static JsonStream startJson(HttpServletResponse response) throws IOException {
+        return new JsonStream(gson, open(response, HttpServletResponse.SC_OK));
     }
 
     /**
-     * Write an error response.
+     * Write an error response, replacing any part of a response that was
+     * written but not yet sent.
      */
     public static void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        if (response.isCommitted()) {
+            // Part of a streamed response has already been sent; the status can no longer change
+            log.warn("Cannot send error {} after the response was committed: {}", status, message);
+            return;
+        }
+        response.resetBuffer();
+        write(response, status, new ErrorResponse(message, status));
+    }
+
+    /**
+     * Serialize a whole document. The stream is only closed once the
+     * document is complete, so that a failure leaves the response
+     * uncommitted for {@link #writeError}.
+     */
+    private static void write(HttpServletResponse response, int status, Object data) throws IOException {
+        JsonWriter writer = open(response, status);
+        gson.toJson(data, data.getClass(), writer);
+        writer.close();
+    }
+
+    private static JsonWriter open(HttpServletResponse response, int status) throws IOException {
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
         response.setStatus(status);
 
-        ErrorResponse error = new ErrorResponse(message, status);
-
-        PrintWriter writer = response.getWriter();
-        writer.write(gson.toJson(error));
-        writer.flush();
+        return gson.newJsonWriter(new BufferedWriter(
+            new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), BUFFER_SIZE));
     }
 }
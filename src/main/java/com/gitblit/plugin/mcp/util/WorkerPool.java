@@ -0,0 +1,276 @@
+/*
+ * Gitblit MCP Support Plugin
+ */
+package com.gitblit.plugin.mcp.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Named, bounded thread pool shared by all requests of one kind.
+ *
+ * Work is fanned out with {@link #forEach}, in which the calling request
+ * thread always takes part. A saturated pool therefore only reduces the
+ * parallelism of a request; it never blocks it. The deadline variant
+ * instead leaves the work to the pool so the caller can give up on time.
+ */
+public class WorkerPool {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkerPool.class);
+
+    private static final Map<String, WorkerPool> pools = new HashMap<>();
+
+    /**
+     * Task invoked once for each index of a fan-out.
+     */
+    public interface IndexedTask {
+        /**
+         * @return false to stop handing out further indices
+         */
+        boolean run(int index);
+    }
+
+    /**
+     * Background task that must be told when it is dropped from the queue
+     * without running, e.g. to answer a suspended request.
+     */
+    public interface CancellableTask extends Runnable {
+        void cancel();
+    }
+
+    /**
+     * Get the named pool, creating it with the given number of threads on first use.
+     */
+    public static WorkerPool get(String name, int threads) {
+        return get(name, threads, Math.max(1, threads) * 16);
+    }
+
+    /**
+     * Get the named pool, creating it with the given number of threads and
+     * queue capacity on first use.
+     */
+    public static synchronized WorkerPool get(String name, int threads, int queueSize) {
+        WorkerPool pool = pools.get(name);
+        if (pool == null) {
+            pool = new WorkerPool(name, Math.max(1, threads), Math.max(1, queueSize));
+            pools.put(name, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Stop all pools. Queued tasks are dropped; those that are
+     * {@link CancellableTask}s are cancelled. Called when the plugin is stopped.
+     */
+    public static synchronized void shutdownAll() {
+        for (WorkerPool pool : pools.values()) {
+            for (Runnable dropped : pool.executor.shutdownNow()) {
+                if (dropped instanceof CancellableTask) {
+                    try {
+                        ((CancellableTask) dropped).cancel();
+                    } catch (RuntimeException e) {
+                        log.warn("Failed to cancel task of worker pool " + pool.name, e);
+                    }
+                }
+            }
+        }
+        pools.clear();
+    }
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+
+    private WorkerPool(final String name, int threads, int queueSize) {
+        this.name = name;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "mcp-" + name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Run a task for every index in [0, count) using at most {@code parallelism}
+     * threads, including the calling thread, and wait for all of them to finish.
+     * Indices are handed out in ascending order. Once a task asks to stop, no
+     * new indices are handed out, but indices already claimed still run, so the
+     * completed indices always form a prefix of [0, count). A task that throws
+     * stops the fan-out too; if it ran on the calling thread, the exception is
+     * rethrown once the tasks running on helpers have finished.
+     *
+     * @return the number of indices that were run
+     */
+    public int forEach(int count, int parallelism, IndexedTask task) {
+        final FanOut fanOut = new FanOut(count, task);
+
+        int helpers = Math.min(parallelism, count) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                executor.execute(fanOut);
+            } catch (RejectedExecutionException e) {
+                log.debug("Worker pool {} saturated, continuing with {} helpers", name, i);
+                break;
+            }
+        }
+
+        // The request thread works too, then waits for indices claimed by helpers,
+        // also when its own task failed: they may use resources the caller frees
+        int run;
+        try {
+            fanOut.run();
+        } finally {
+            run = fanOut.awaitClaimed();
+        }
+        return run;
+    }
+
+    /**
+     * Run a task for every index in [0, count) on at most {@code parallelism}
+     * pool threads, waiting no longer than the deadline. When the deadline
+     * passes, no new indices are handed out and this method returns while
+     * tasks already running finish in the background; callers must only use
+     * results of tasks that completed in time. If the pool cannot take any
+     * work, the calling thread runs the tasks itself and checks the deadline
+     * between them.
+     *
+     * @param deadline absolute deadline in {@link System#nanoTime()} terms
+     * @return true if every index ran before the deadline
+     */
+    public boolean forEach(int count, int parallelism, long deadline, IndexedTask task) {
+        FanOut fanOut = new FanOut(count, task);
+        fanOut.deadline = deadline;
+
+        int helpers = Math.min(parallelism, count);
+        int started = 0;
+        for (; started < helpers; started++) {
+            try {
+                executor.execute(fanOut);
+            } catch (RejectedExecutionException e) {
+                log.debug("Worker pool {} saturated, continuing with {} helpers", name, started);
+                break;
+            }
+        }
+
+        if (started == 0) {
+            fanOut.run();
+        }
+        return fanOut.awaitDeadline();
+    }
+
+    /**
+     * Run a task in the background without waiting for it.
+     *
+     * @return false if the pool is saturated and the task was not queued
+     */
+    public boolean execute(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.debug("Worker pool {} saturated, dropping background task", name);
+            return false;
+        }
+    }
+
+    /**
+     * Shared state of one {@link #forEach} call.
+     */
+    private static class FanOut implements Runnable {
+        private final int count;
+        private final IndexedTask task;
+        private long deadline;  // 0 = none
+        private int next;
+        private int done;
+        private boolean stopped;
+
+        FanOut(int count, IndexedTask task) {
+            this.count = count;
+            this.task = task;
+        }
+
+        private synchronized int claim() {
+            if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+                stopped = true;
+            }
+            if (stopped || next >= count) {
+                return -1;
+            }
+            return next++;
+        }
+
+        private synchronized void finish(boolean proceed) {
+            done++;
+            if (!proceed) {
+                stopped = true;
+            }
+            notifyAll();
+        }
+
+        @Override
+        public void run() {
+            int index;
+            while ((index = claim()) >= 0) {
+                boolean proceed = false;
+                try {
+                    proceed = task.run(index);
+                } finally {
+                    finish(proceed);
+                }
+            }
+        }
+
+        /**
+         * Wait for all claimed indices. Only called once claim() has returned
+         * -1 on the calling thread or a task has thrown, after which no new
+         * claims can happen.
+         */
+        synchronized int awaitClaimed() {
+            while (done < next) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            return next;
+        }
+
+        /**
+         * Wait until all indices have run or the deadline passes, whichever
+         * comes first. Stops further claims on return.
+         */
+        synchronized boolean awaitDeadline() {
+            while (done < count && !(stopped && done == next)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    wait(Math.max(1, remaining / 1000000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            stopped = true;
+            return done == count;
+        }
+    }
+}
@@ -43,7 +43,7 @@ def api_client(session, api_url):
             response = self.session.get(url, params=params)
             return response
 
-        def repos(self, query=None, limit=None, offset=None):
+        def repos(self, query=None, limit=None, offset=None, after=None):
             """GET /repos endpoint."""
             params = {}
             if query:
@@ -52,6 +52,8 @@ def api_client(session, api_url):
                 params["limit"] = limit
             if offset is not None:
                 params["offset"] = offset
+            if after:
+                params["after"] = after
             return self.get("repos", params or None)
 
         def files(self, repo, path=None, revision=None, limit=None, offset=None):
@@ -78,9 +80,15 @@ def api_client(session, api_url):
                 params["endLine"] = end_line
             return self.get("file", params)
 
+        def file_batch(self, items):
+            """POST /file/batch endpoint."""
+            url = f"{self.base_url}/file/batch"
+            return self.session.post(url, json={"items": items})
+
         def search_files(
             self, query, repos=None, path_pattern=None, branch=None, limit=None,
-            offset=None, context_lines=None
+            offset=None, context_lines=None, max_chunks=None, timeout_ms=None,
+            exact_count=None
         ):
             """GET /search/files endpoint."""
             params = {"query": query}
@@ -96,6 +104,12 @@ def api_client(session, api_url):
                 params["offset"] = offset
             if context_lines is not None:
                 params["contextLines"] = context_lines
+            if max_chunks is not None:
+                params["maxChunks"] = max_chunks
+            if timeout_ms is not None:
+                params["timeoutMs"] = timeout_ms
+            if exact_count is not None:
+                params["exactCount"] = "true" if exact_count else "false"
             return self.get("search/files", params)
 
         def search_commits(
@@ -118,7 +132,30 @@ def api_client(session, api_url):
                 params["offset"] = offset
             return self.get("search/commits", params)
 
-        def find(self, path_pattern, repos=None, revision=None, limit=None, offset=None):
+        def search_regex(
+            self, pattern, repos=None, path_pattern=None, branch=None, count=None,
+            case_insensitive=None, timeout_ms=None
+        ):
+            """GET /search/regex endpoint."""
+            params = {"pattern": pattern}
+            if repos:
+                params["repos"] = repos if isinstance(repos, str) else ",".join(repos)
+            if path_pattern:
+                params["pathPattern"] = path_pattern
+            if branch:
+                params["branch"] = branch
+            if count:
+                params["count"] = count
+            if case_insensitive is not None:
+                params["caseInsensitive"] = "true" if case_insensitive else "false"
+            if timeout_ms is not None:
+                params["timeoutMs"] = timeout_ms
+            return self.get("search/regex", params)
+
+        def find(
+            self, path_pattern, repos=None, revision=None, limit=None, offset=None,
+            after=None, exact_count=None, timeout_ms=None
+        ):
             """GET /find endpoint."""
             params = {"pathPattern": path_pattern}
             if repos:
@@ -129,6 +166,12 @@ def api_client(session, api_url):
                 params["limit"] = limit
             if offset is not None:
                 params["offset"] = offset
+            if after:
+                params["after"] = after
+            if exact_count is not None:
+                params["exactCount"] = "true" if exact_count else "false"
+            if timeout_ms is not None:
+                params["timeoutMs"] = timeout_ms
             return self.get("find", params)
 
     return APIClient(session, api_url)
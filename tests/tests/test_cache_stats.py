@@ -0,0 +1,15 @@
+"""
+Tests for GET /api/.mcp-internal/cache/stats endpoint.
+"""
+
+
+class TestCacheStatsEndpoint:
+    """Tests for the /cache/stats endpoint."""
+
+    def test_cache_stats_requires_admin(self, api_client):
+        """Test that anonymous users cannot read cache statistics."""
+        response = api_client.get("cache/stats")
+        assert response.status_code == 403
+
+        data = response.json()
+        assert "error" in data
@@ -0,0 +1,68 @@
+"""
+Tests for response compression of the MCP API.
+"""
+import pytest
+
+
+class TestCompression:
+    """Tests for Accept-Encoding negotiation."""
+
+    def get(self, api_client, endpoint, params, encoding):
+        return api_client.session.get(
+            f"{api_client.base_url}/{endpoint}",
+            params=params,
+            headers={"Accept-Encoding": encoding},
+        )
+
+    @pytest.fixture
+    def large_listing(self, api_client):
+        """Parameters of a response large enough to be compressed."""
+        repos = api_client.repos(limit=100).json()
+        if len(repos["repositories"]) < 10:
+            pytest.skip("Not enough repositories for a large response")
+        return {"limit": 100}
+
+    def test_gzip_response(self, api_client, large_listing):
+        """Test that large responses are gzip compressed when accepted."""
+        response = self.get(api_client, "repos", large_listing, "gzip")
+        assert response.status_code == 200
+        assert response.headers.get("Content-Encoding") == "gzip"
+        assert "repositories" in response.json()
+
+    def test_deflate_response(self, api_client, large_listing):
+        """Test that deflate is used when gzip is not accepted."""
+        response = self.get(api_client, "repos", large_listing, "deflate")
+        assert response.status_code == 200
+        assert response.headers.get("Content-Encoding") == "deflate"
+        assert "repositories" in response.json()
+
+    def test_identity_response(self, api_client, large_listing):
+        """Test that responses are not compressed without Accept-Encoding."""
+        response = self.get(api_client, "repos", large_listing, "identity")
+        assert response.status_code == 200
+        assert "Content-Encoding" not in response.headers
+
+    def test_refused_encoding(self, api_client, large_listing):
+        """Test that codings with q=0 are not used."""
+        response = self.get(api_client, "repos", large_listing, "gzip;q=0, deflate")
+        assert response.headers.get("Content-Encoding") == "deflate"
+
+    def test_small_response_not_compressed(self, api_client):
+        """Test that responses below the minimum size are sent as is."""
+        response = self.get(api_client, "file", {"path": "x"}, "gzip")
+        assert response.status_code == 400
+        assert "Content-Encoding" not in response.headers
+
+    @pytest.mark.parametrize("encoding", ["gzip", "identity"])
+    def test_vary_on_every_response(self, api_client, encoding):
+        """Test that compressed and uncompressed responses both vary by Accept-Encoding."""
+        response = self.get(api_client, "file", {"path": "x"}, encoding)
+        assert "Accept-Encoding" in response.headers.get("Vary", "")
+
+    def test_etag_is_weak(self, api_client):
+        """Test that ETags are weak, as they are shared across encodings."""
+        repo = api_client.repos(limit=1).json()["repositories"][0]["name"]
+        gzip = self.get(api_client, "files", {"repo": repo}, "gzip")
+        identity = self.get(api_client, "files", {"repo": repo}, "identity")
+        assert gzip.headers["ETag"].startswith('W/"')
+        assert gzip.headers["ETag"] == identity.headers["ETag"]
@@ -75,6 +75,30 @@ class TestFileEndpoint:
         # First line should be line 2
         assert lines[0].startswith("2: ")
 
+    def test_line_windows_match_full_read(self, api_client, test_repo, test_file):
+        """Test that reading a file in small windows yields the same lines as one read."""
+        full_response = api_client.file(repo=test_repo, path=test_file)
+        full_lines = full_response.json()["content"].split("\n")[:-1][:30]
+
+        if len(full_lines) < 4:
+            pytest.skip("File too small for line window test")
+
+        windowed = []
+        for start in range(1, len(full_lines) + 1, 3):
+            response = api_client.file(repo=test_repo, path=test_file,
+                                       start_line=start, end_line=start + 2)
+            assert response.status_code == 200
+            windowed.extend(response.json()["content"].split("\n")[:-1])
+
+        assert windowed == full_lines
+
+    def test_line_range_past_end(self, api_client, test_repo, test_file):
+        """Test that a range starting past the last line returns no content."""
+        response = api_client.file(repo=test_repo, path=test_file,
+                                   start_line=1000000, end_line=1000010)
+        assert response.status_code == 200
+        assert response.json()["content"] == ""
+
     def test_missing_repo_parameter(self, api_client):
         """Test error when repo parameter is missing."""
         response = api_client.get("file", {"path": "test.txt"})
@@ -95,9 +119,33 @@ class TestFileEndpoint:
         response = api_client.file(repo=test_repo, path=test_file, revision="HEAD")
         assert response.status_code == 200
 
+    def test_conditional_get(self, api_client, test_repo, test_file):
+        """Test that a matching If-None-Match is answered with 304."""
+        url = f"{api_client.base_url}/file"
+        params = {"repo": test_repo, "path": test_file}
+        response = api_client.session.get(url, params=params)
+        assert response.status_code == 200
+        etag = response.headers.get("ETag")
+        assert etag and etag.startswith('W/"')
+
+        response = api_client.session.get(url, params=params, headers={"If-None-Match": etag})
+        assert response.status_code == 304
+        assert response.content == b""
+
+        # A different line range is a different representation
+        params["startLine"] = 2
+        response = api_client.session.get(url, params=params, headers={"If-None-Match": etag})
+        assert response.status_code == 200
+
+    def test_error_has_no_etag(self, api_client, test_repo):
+        """Test that a missing file is not tagged."""
+        response = api_client.file(repo=test_repo, path="does/not/exist.txt")
+        assert response.status_code == 404
+        assert "ETag" not in response.headers
 
-class TestFileSizeLimit:
-    """Tests for file size limit (128KB)."""
+
+class TestLargeFiles:
+    """Tests for streamed reads of files over 128KB."""
 
     @pytest.fixture
     def test_repo(self, api_client):
@@ -108,19 +156,37 @@ class TestFileSizeLimit:
                 return repo["name"]
         pytest.skip("No repository with commits available")
 
-    def test_large_file_rejected(self, api_client, test_repo):
-        """Test that files over 128KB are rejected."""
-        # Find a large file if one exists
+    @pytest.fixture
+    def large_file(self, api_client, test_repo):
+        """Get a file over 128KB if one exists."""
         files = api_client.files(repo=test_repo).json()
-        large_file = None
         for entry in files["files"]:
             if not entry["isDirectory"] and entry.get("size", 0) > 128 * 1024:
-                large_file = entry["path"]
-                break
-
-        if not large_file:
-            pytest.skip("No large file available for testing")
+                return entry["path"]
+        pytest.skip("No large file available for testing")
 
+    def test_large_file_streamed(self, api_client, test_repo, large_file):
+        """Test that files over 128KB are served a window at a time."""
         response = api_client.file(repo=test_repo, path=large_file)
-        assert response.status_code == 400
-        assert "128KB" in response.json().get("error", "")
+        if response.status_code == 400:
+            assert "Binary" in response.json().get("error", "")
+            return
+        assert response.status_code == 200
+
+        data = response.json()
+        assert data["content"].startswith("1: ")
+        assert len(data["content"].encode("utf-8")) <= 2 * 128 * 1024
+        if "nextStartLine" in data:
+            last = data["content"].rstrip("\n").split("\n")[-1]
+            assert int(last.split(":", 1)[0]) + 1 == data["nextStartLine"]
+
+    def test_large_file_line_range(self, api_client, test_repo, large_file):
+        """Test that a line range of a large file starts at the requested line."""
+        response = api_client.file(repo=test_repo, path=large_file, start_line=2, end_line=3)
+        if response.status_code == 400:
+            pytest.skip("Large file is binary")
+        assert response.status_code == 200
+
+        lines = response.json()["content"].strip().split("\n")
+        assert len(lines) <= 2
+        assert lines[0].startswith("2: ")
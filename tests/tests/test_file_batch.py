@@ -0,0 +1,113 @@
+"""
+Tests for POST /api/.mcp-internal/file/batch endpoint.
+"""
+import pytest
+
+
+class TestFileBatchEndpoint:
+    """Tests for the /file/batch endpoint."""
+
+    @pytest.fixture
+    def test_repo(self, api_client):
+        """Get a repository with commits for testing."""
+        repos = api_client.repos().json()
+        for repo in repos["repositories"]:
+            if repo["hasCommits"]:
+                return repo["name"]
+        pytest.skip("No repository with commits available")
+
+    @pytest.fixture
+    def test_files(self, api_client, test_repo):
+        """Get up to three files at the repository root."""
+        files = api_client.files(repo=test_repo).json()
+        paths = [entry["path"] for entry in files["files"] if not entry["isDirectory"]]
+        if not paths:
+            pytest.skip("No files in repository")
+        return paths[:3]
+
+    def test_batch_matches_single_reads(self, api_client, test_repo, test_files):
+        """Test that each batch result equals the corresponding /file response."""
+        items = [{"repo": test_repo, "path": path} for path in test_files]
+        response = api_client.file_batch(items)
+        assert response.status_code == 200
+
+        results = response.json()["results"]
+        assert len(results) == len(items)
+        for item, result in zip(items, results):
+            assert result["repo"] == item["repo"]
+            assert result["path"] == item["path"]
+            single = api_client.file(repo=test_repo, path=item["path"])
+            if single.status_code == 200:
+                assert result["content"] == single.json()["content"]
+            else:
+                assert result["status"] == single.status_code
+
+    def test_batch_line_range(self, api_client, test_repo, test_files):
+        """Test that line ranges are applied per item."""
+        items = [{"repo": test_repo, "path": test_files[0], "startLine": 2, "endLine": 3}]
+        response = api_client.file_batch(items)
+        assert response.status_code == 200
+
+        result = response.json()["results"][0]
+        if "content" in result and result["content"]:
+            assert result["content"].startswith("2: ")
+
+    def test_batch_per_item_errors(self, api_client, test_repo, test_files):
+        """Test that failing items do not fail the whole batch."""
+        items = [
+            {"repo": test_repo, "path": test_files[0]},
+            {"repo": test_repo, "path": "nonexistent/file/path.txt"},
+            {"repo": "nonexistent-repo-12345.git", "path": "README.md"},
+            {"repo": test_repo},
+        ]
+        response = api_client.file_batch(items)
+        assert response.status_code == 200
+
+        results = response.json()["results"]
+        assert len(results) == 4
+        assert results[1]["status"] == 404
+        assert results[2]["status"] == 404
+        assert results[3]["status"] == 400
+        assert "error" in results[3]
+
+    def test_batch_large_file_streamed(self, api_client, test_repo):
+        """Test that files over 128KB get the same window as /file instead of an error."""
+        files = api_client.files(repo=test_repo).json()
+        large = [e["path"] for e in files["files"] if not e["isDirectory"] and e.get("size", 0) > 128 * 1024]
+        if not large:
+            pytest.skip("No large file available for testing")
+
+        single = api_client.file(repo=test_repo, path=large[0])
+        result = api_client.file_batch([{"repo": test_repo, "path": large[0]}]).json()["results"][0]
+        if single.status_code == 200:
+            assert result["content"] == single.json()["content"]
+            assert result.get("nextStartLine") == single.json().get("nextStartLine")
+        else:
+            assert result["status"] == single.status_code
+
+    def test_batch_body_limit_counts_bytes(self, api_client, test_repo):
+        """Test that the body limit applies to bytes, not characters."""
+        # Under 256K characters, but over 256KB as UTF-8; sent chunked, without a Content-Length
+        padding = "\u00e9" * (140 * 1024)
+        url = f"{api_client.base_url}/file/batch"
+        body = '{"items": [{"repo": "%s", "path": "%s"}]}' % (test_repo, padding)
+        response = api_client.session.post(
+            url, data=iter([body.encode("utf-8")]), headers={"Content-Type": "application/json"}
+        )
+        assert response.status_code == 400
+
+    def test_batch_invalid_body(self, api_client):
+        """Test error when the body is not a batch."""
+        url = f"{api_client.base_url}/file/batch"
+        response = api_client.session.post(url, data="not json")
+        assert response.status_code == 400
+
+    def test_batch_empty(self, api_client):
+        """Test error when the batch has no items."""
+        response = api_client.file_batch([])
+        assert response.status_code == 400
+
+    def test_batch_requires_post(self, api_client):
+        """Test that GET is not allowed."""
+        response = api_client.get("file/batch")
+        assert response.status_code == 405
@@ -170,3 +170,31 @@ class TestFilesEndpoint:
         # Request all
         all_results = api_client.files(repo=test_repo, limit=total).json()
         assert all_results["limitHit"] is False
+
+    def test_conditional_get(self, api_client, test_repo):
+        """Test that a matching If-None-Match is answered with 304."""
+        url = f"{api_client.base_url}/files"
+        response = api_client.session.get(url, params={"repo": test_repo})
+        assert response.status_code == 200
+        etag = response.headers.get("ETag")
+        assert etag and etag.startswith('W/"')
+
+        response = api_client.session.get(url, params={"repo": test_repo}, headers={"If-None-Match": etag})
+        assert response.status_code == 304
+        assert response.headers.get("ETag") == etag
+        assert response.content == b""
+
+    def test_etag_depends_on_params(self, api_client, test_repo):
+        """Test that different parameters produce a different ETag."""
+        url = f"{api_client.base_url}/files"
+        first = api_client.session.get(url, params={"repo": test_repo})
+        params = dict({"repo": test_repo}, limit=1)
+        second = api_client.session.get(url, params=params, headers={"If-None-Match": first.headers["ETag"]})
+        assert second.status_code == 200
+        assert second.headers["ETag"] != first.headers["ETag"]
+
+    def test_error_has_no_etag(self, api_client, test_repo):
+        """Test that a missing path is not tagged."""
+        response = api_client.files(repo=test_repo, path="does/not/exist")
+        assert response.status_code == 404
+        assert "ETag" not in response.headers
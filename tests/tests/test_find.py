@@ -1,6 +1,8 @@
 """
 Tests for GET /api/.mcp-internal/find endpoint.
 """
+import base64
+
 import pytest
 
 
@@ -253,3 +255,105 @@ class TestFindFilesEndpoint:
         assert data["totalCount"] == 0
         assert data["results"] == []
         assert data["limitHit"] is False
+
+    def test_find_cursor_pagination(self, api_client, repo_with_commits):
+        """Test that following nextCursor returns the same files as one large page."""
+        full = api_client.find(path_pattern="**/*", repos=repo_with_commits, limit=200).json()
+        if full["totalCount"] <= 3 or full["totalCount"] > 200:
+            pytest.skip("Need between 4 and 200 files for cursor test")
+
+        expected = [f for r in full["results"] for f in r["files"]]
+        seen = []
+        data = api_client.find(path_pattern="**/*", repos=repo_with_commits, limit=3).json()
+        while True:
+            seen.extend(f for r in data["results"] for f in r["files"])
+            if not data["limitHit"]:
+                break
+            data = api_client.find(
+                path_pattern="**/*", repos=repo_with_commits, limit=3,
+                after=data["nextCursor"]
+            ).json()
+
+        assert seen == expected
+
+    def test_find_inexact_count(self, api_client, repo_with_commits):
+        """Test that exactCount=false still reports that more results exist."""
+        full = api_client.find(path_pattern="**/*", repos=repo_with_commits, limit=200).json()
+        if full["totalCount"] <= 2:
+            pytest.skip("Not enough files to test inexact count")
+
+        response = api_client.find(
+            path_pattern="**/*", repos=repo_with_commits, limit=2, exact_count=False
+        )
+        assert response.status_code == 200
+
+        data = response.json()
+        assert data["limitHit"] is True
+        assert data["nextCursor"]
+        assert data["totalCount"] <= full["totalCount"]
+        assert full["totalCountExact"] is True
+
+    def test_find_stale_cursor(self, api_client, repo_with_commits):
+        """Test that a cursor issued for a different tree is flagged but still followed."""
+        first = api_client.find(path_pattern="**/*", repos=repo_with_commits, limit=1).json()
+        if not first["limitHit"]:
+            pytest.skip("Need more than one file for cursor test")
+
+        following = api_client.find(
+            path_pattern="**/*", repos=repo_with_commits, limit=1, after=first["nextCursor"]
+        ).json()
+        assert "cursorStale" not in following
+
+        # Same repository and path, tree id of another commit
+        repo, _, path = base64.urlsafe_b64decode(first["nextCursor"] + "==").decode("utf-8").split("\0")
+        stale = base64.urlsafe_b64encode(f"{repo}\0{'0' * 40}\0{path}".encode("utf-8")).decode("ascii").rstrip("=")
+        response = api_client.find(path_pattern="**/*", repos=repo_with_commits, limit=1, after=stale)
+        assert response.status_code == 200
+        data = response.json()
+        assert data["cursorStale"] is True
+        assert data["results"] == following["results"]
+
+    def test_find_invalid_cursor(self, api_client, repo_with_commits):
+        """Test that a malformed cursor is rejected."""
+        response = api_client.find(path_pattern="*", repos=repo_with_commits, after="%%%")
+        assert response.status_code == 400
+
+    def test_conditional_get(self, api_client, repo_with_commits):
+        """Test that a matching If-None-Match is answered with 304."""
+        url = f"{api_client.base_url}/find"
+        response = api_client.session.get(url, params={"pathPattern": "*", "repos": repo_with_commits})
+        assert response.status_code == 200
+        etag = response.headers.get("ETag")
+        assert etag and etag.startswith('W/"')
+
+        response = api_client.session.get(url, params={"pathPattern": "*", "repos": repo_with_commits}, headers={"If-None-Match": etag})
+        assert response.status_code == 304
+        assert response.headers.get("ETag") == etag
+        assert response.content == b""
+
+    def test_etag_depends_on_params(self, api_client, repo_with_commits):
+        """Test that different parameters produce a different ETag."""
+        url = f"{api_client.base_url}/find"
+        first = api_client.session.get(url, params={"pathPattern": "*", "repos": repo_with_commits})
+        params = dict({"pathPattern": "*", "repos": repo_with_commits}, limit=1)
+        second = api_client.session.get(url, params=params, headers={"If-None-Match": first.headers["ETag"]})
+        assert second.status_code == 200
+        assert second.headers["ETag"] != first.headers["ETag"]
+
+    def test_deadline_returns_partial_results(self, api_client):
+        """Test that an expired deadline returns what was found, flagged partial."""
+        response = api_client.find(path_pattern="**", timeout_ms=1)
+        assert response.status_code == 200
+
+        data = response.json()
+        assert isinstance(data["results"], list)
+        if not data.get("partial"):
+            pytest.skip("Walk finished within the deadline")
+        assert data["totalCountExact"] is False
+        assert "ETag" not in response.headers
+        # Even with nothing found yet, the client can resume
+        assert "nextCursor" in data
+
+        # Complete responses do not carry the flag
+        full = api_client.find(path_pattern="*", limit=1).json()
+        assert "partial" not in full
@@ -0,0 +1,15 @@
+"""
+Tests for GET /api/.mcp-internal/metrics endpoint.
+"""
+
+
+class TestMetricsEndpoint:
+    """Tests for the /metrics endpoint."""
+
+    def test_metrics_requires_admin(self, api_client):
+        """Test that anonymous users cannot read metrics."""
+        response = api_client.get("metrics")
+        assert response.status_code == 403
+
+        data = response.json()
+        assert "error" in data
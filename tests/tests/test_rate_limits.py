@@ -0,0 +1,41 @@
+"""
+Tests for rate limiting of the MCP API.
+"""
+import math
+import os
+import time
+
+import pytest
+
+# Per-client limits of the server under test; the plugin defaults unless overridden
+USER_RATE = int(os.environ.get("MCP_LIMITS_USER_RATE", "100"))
+USER_BURST = int(os.environ.get("MCP_LIMITS_USER_BURST", "300"))
+
+
+class TestRateLimits:
+    """Tests for the per-client token bucket."""
+
+    def test_burst_is_limited(self, api_client):
+        """Test that a burst of searches is answered with 429 and Retry-After."""
+        try:
+            rejected = None
+            for _ in range(200):
+                response = api_client.find("*.md")
+                if response.status_code == 429:
+                    rejected = response
+                    break
+                assert response.status_code == 200
+
+            if rejected is None:
+                pytest.skip("Rate limits are disabled or too high to reach")
+
+            retry_after = int(rejected.headers["Retry-After"])
+            assert retry_after >= 1
+            assert "error" in rejected.json()
+
+            # The bucket refills: the request is admitted after waiting
+            time.sleep(retry_after)
+            assert api_client.find("*.md").status_code == 200
+        finally:
+            # Leave a full bucket for the tests that follow
+            time.sleep(math.ceil(USER_BURST / USER_RATE))
@@ -121,3 +121,27 @@ class TestReposEndpoint:
         assert data["repositories"] == []
         assert data["totalCount"] == total
         assert data["limitHit"] is False
+
+    def test_cursor_pagination(self, api_client):
+        """Test that following nextCursor walks all repositories once."""
+        all_repos = api_client.repos(limit=100).json()
+        if all_repos["totalCount"] <= 1 or all_repos["totalCount"] > 100:
+            pytest.skip("Need between 2 and 100 repositories for cursor test")
+
+        expected = [r["name"] for r in all_repos["repositories"]]
+        seen = []
+        data = api_client.repos(limit=1).json()
+        while True:
+            seen.extend(r["name"] for r in data["repositories"])
+            if not data["limitHit"]:
+                assert "nextCursor" not in data
+                break
+            assert data["nextCursor"]
+            data = api_client.repos(limit=1, after=data["nextCursor"]).json()
+
+        assert seen == expected
+
+    def test_invalid_cursor(self, api_client):
+        """Test that a malformed cursor is rejected."""
+        response = api_client.repos(after="not a cursor!")
+        assert response.status_code == 400
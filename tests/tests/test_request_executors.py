@@ -0,0 +1,33 @@
+"""
+Tests for request executors and backpressure of the MCP API.
+"""
+from concurrent.futures import ThreadPoolExecutor
+
+
+class TestRequestExecutors:
+    """Tests for requests running on the plugin's bounded pools."""
+
+    def test_concurrent_requests(self, api_client):
+        """Test that concurrent requests succeed or are turned away with Retry-After."""
+        def fetch(_):
+            return api_client.session.get(
+                f"{api_client.base_url}/repos", params={"limit": 5}
+            )
+
+        with ThreadPoolExecutor(max_workers=16) as pool:
+            responses = list(pool.map(fetch, range(64)))
+
+        assert any(r.status_code == 200 for r in responses)
+        for response in responses:
+            assert response.status_code in (200, 429, 503)
+            if response.status_code != 200:
+                assert int(response.headers["Retry-After"]) >= 1
+                assert "error" in response.json()
+            else:
+                assert "repositories" in response.json()
+
+    def test_expensive_endpoint(self, api_client):
+        """Test that endpoints on the expensive pool still answer normally."""
+        response = api_client.find("*.md")
+        assert response.status_code == 200
+        assert "results" in response.json()
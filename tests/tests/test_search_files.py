@@ -16,6 +16,16 @@ class TestFileSearchEndpoint:
                 return repo["name"]
         pytest.skip("No indexed repository available")
 
+    @staticmethod
+    def _single_match_chunk(result):
+        """First chunk around a single match line; merged chunks may be longer."""
+        lines = {m["line"] for m in result.get("matches") or []}
+        for chunk in result["chunks"]:
+            inside = [line for line in lines if chunk["startLine"] <= line <= chunk["endLine"]]
+            if len(inside) == 1 or not lines:
+                return chunk
+        return None
+
     def test_basic_search(self, api_client, indexed_repo):
         """Test basic file content search."""
         # Search for a common term that should exist
@@ -249,6 +259,113 @@ class TestFileSearchEndpoint:
             assert result["path"].endswith(".cs"), \
                 f"Result {result['path']} should match *.cs pattern"
 
+    def test_path_pattern_with_literal_directory(self, api_client, indexed_repo):
+        """Test that literal path segments narrow the query without losing matches."""
+        response = api_client.search_files(query="public", repos=indexed_repo, limit=50)
+        assert response.status_code == 200
+        results = response.json()["results"]
+
+        directories = [r["path"].split("/")[0] for r in results if "/" in r["path"]]
+        directories = [d for d in directories if d.isalnum()]
+        if not directories:
+            pytest.skip("No results below an alphanumeric directory")
+        directory = directories[0]
+
+        response = api_client.search_files(
+            query="public",
+            repos=indexed_repo,
+            path_pattern=f"{directory}/**",
+            limit=50
+        )
+        assert response.status_code == 200
+
+        data = response.json()
+        assert "totalCountExact" in data
+        assert data["results"], f"Expected results below {directory}/"
+        for result in data["results"]:
+            assert result["path"].startswith(directory + "/"), \
+                f"Result {result['path']} should be below {directory}/"
+        if data["totalCountExact"]:
+            assert data["totalCount"] >= len(data["results"])
+
+    def test_path_pattern_stops_when_page_is_full(self, api_client, indexed_repo):
+        """Test that path filtering stops once the page is full unless an exact count is asked for."""
+        exact = api_client.search_files(
+            query="*", repos=indexed_repo, path_pattern="**", limit=1, exact_count=True
+        ).json()
+        if exact["totalCount"] <= 100:
+            # Hits are fetched in pages of 100, so filtering can only stop after the first
+            pytest.skip("Not enough matches for a second page of hits")
+
+        data = api_client.search_files(query="*", repos=indexed_repo, path_pattern="**", limit=1).json()
+        assert len(data["results"]) == 1
+        assert data["limitHit"] is True
+        assert data["totalCountExact"] is False
+        assert data["totalCount"] <= exact["totalCount"]
+
+    def test_match_positions(self, api_client, indexed_repo):
+        """Test that match positions point at the query term."""
+        response = api_client.search_files(query="class", repos=indexed_repo, limit=10)
+        assert response.status_code == 200
+
+        data = response.json()
+        results = [r for r in data["results"] if r.get("matches")]
+        if not results:
+            pytest.skip("No results with match positions")
+
+        for result in results:
+            chunk = result["chunks"][0]
+            lines = {}
+            for text in chunk["content"].split("\n"):
+                number, sep, line = text.partition(": ")
+                if sep:
+                    lines[int(number)] = line
+
+            first = result["matches"][0]
+            assert chunk["startLine"] <= first["line"] <= chunk["endLine"], \
+                "Chunk should contain the first match"
+            for match in result["matches"]:
+                assert match["line"] >= 1
+                assert 0 <= match["startColumn"] < match["endColumn"]
+                if match["line"] in lines:
+                    term = lines[match["line"]][match["startColumn"]:match["endColumn"]]
+                    assert term.lower() == "class", f"Match should cover the term, got '{term}'"
+
+    def test_multiple_chunks_are_disjoint(self, api_client, indexed_repo):
+        """Test that chunks of a file are ordered and neither overlap nor touch."""
+        response = api_client.search_files(
+            query="public", repos=indexed_repo, limit=10, context_lines=2, max_chunks=20
+        )
+        assert response.status_code == 200
+
+        data = response.json()
+        multi = [r for r in data["results"] if len(r["chunks"]) > 1]
+        if not multi:
+            pytest.skip("No file with more than one chunk")
+
+        for result in multi:
+            chunks = result["chunks"]
+            assert len(chunks) <= 20
+            for previous, chunk in zip(chunks, chunks[1:]):
+                assert chunk["startLine"] > previous["endLine"] + 1, \
+                    f"Chunks of {result['path']} should have been merged"
+
+            # Every match line up to the last chunk is covered by a chunk
+            last_line = chunks[-1]["endLine"]
+            for match in result["matches"]:
+                if match["line"] <= last_line:
+                    assert any(c["startLine"] <= match["line"] <= c["endLine"] for c in chunks)
+
+    def test_max_chunks(self, api_client, indexed_repo):
+        """Test that maxChunks caps the chunks per file."""
+        response = api_client.search_files(
+            query="public", repos=indexed_repo, limit=10, context_lines=2, max_chunks=1
+        )
+        assert response.status_code == 200
+
+        for result in response.json()["results"]:
+            assert len(result["chunks"]) <= 1
+
     def test_context_lines_default(self, api_client, indexed_repo):
         """Test that default context lines is 10 (reduced from 100)."""
         response = api_client.search_files(query="public", repos=indexed_repo)
@@ -259,8 +376,8 @@ class TestFileSearchEndpoint:
             pytest.skip("No search results to validate context")
 
         for result in data["results"]:
-            if result["chunks"]:
-                chunk = result["chunks"][0]
+            chunk = self._single_match_chunk(result)
+            if chunk:
                 # With default of 10 lines (5 before, 5 after), chunk should be small
                 lines_in_chunk = chunk["endLine"] - chunk["startLine"] + 1
                 # Should be around 10 lines or less (depending on file size/match position)
@@ -311,8 +428,8 @@ class TestFileSearchEndpoint:
             pytest.skip("No search results to validate context")
 
         for result in data["results"]:
-            if result["chunks"]:
-                chunk = result["chunks"][0]
+            chunk = self._single_match_chunk(result)
+            if chunk:
                 lines_in_chunk = chunk["endLine"] - chunk["startLine"] + 1
                 # Should be capped at 200, so shouldn't exceed that much
                 assert lines_in_chunk <= 210, \
@@ -344,3 +461,14 @@ class TestFileSearchEndpoint:
         # Should only have results from one branch (the default)
         assert len(branches) <= 1, \
             f"Without branch filter, should only get default branch results, got: {branches}"
+
+    def test_deadline_returns_partial_results(self, api_client, indexed_repo):
+        """Test that an expired deadline returns hits without their pending chunks."""
+        response = api_client.search_files(query="class", repos=indexed_repo, timeout_ms=1)
+        assert response.status_code == 200
+
+        data = response.json()
+        assert isinstance(data["results"], list)
+        if not data.get("partial"):
+            pytest.skip("Search finished within the deadline")
+        assert any(r.get("chunkTimedOut") for r in data["results"])
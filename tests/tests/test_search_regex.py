@@ -0,0 +1,171 @@
+"""
+Tests for GET /api/.mcp-internal/search/regex endpoint.
+"""
+import re
+
+import pytest
+
+
+class TestRegexSearchEndpoint:
+    """Tests for the /search/regex endpoint."""
+
+    @pytest.fixture
+    def indexed_repo(self, api_client):
+        """Get a repository that is indexed for searching."""
+        repos = api_client.repos().json()
+        for repo in repos["repositories"]:
+            if repo["hasCommits"]:
+                return repo["name"]
+        pytest.skip("No indexed repository available")
+
+    def test_missing_pattern_parameter(self, api_client):
+        """Test that pattern is required."""
+        response = api_client.get("search/regex", {})
+        assert response.status_code == 400
+
+        data = response.json()
+        assert "pattern" in data["error"]
+
+    def test_invalid_pattern(self, api_client, indexed_repo):
+        """Test that an invalid regular expression returns 400."""
+        response = api_client.search_regex("getFoo(", repos=indexed_repo)
+        assert response.status_code == 400
+
+        data = response.json()
+        assert "regular expression" in data["error"].lower()
+
+    def test_response_structure(self, api_client, indexed_repo):
+        """Test the response fields."""
+        response = api_client.search_regex(r"public\s+class", repos=indexed_repo)
+        assert response.status_code == 200
+
+        data = response.json()
+        assert data["pattern"] == r"public\s+class"
+        assert "candidateCount" in data
+        assert "limitHit" in data
+        assert isinstance(data["results"], list)
+        assert data["candidateCount"] >= len(data["results"])
+
+    def test_matches_satisfy_pattern(self, api_client, indexed_repo):
+        """Test that every reported line matches the pattern."""
+        pattern = r"import\s+[a-z]+\."
+        response = api_client.search_regex(pattern, repos=indexed_repo, count=10)
+        assert response.status_code == 200
+
+        data = response.json()
+        if not data["results"]:
+            pytest.skip("No regex matches to validate")
+
+        for result in data["results"]:
+            assert "repository" in result
+            assert "path" in result
+            assert "branch" in result
+            assert "commitId" in result
+            assert result["matches"], "Results must have at least one matching line"
+            for match in result["matches"]:
+                assert match["line"] >= 1
+                assert re.search(pattern, match["text"]), \
+                    f"Line {match['line']} of {result['path']} does not match: {match['text']}"
+
+    def test_substring_with_punctuation(self, api_client, indexed_repo):
+        """Test a literal substring that word-based search cannot express."""
+        response = api_client.search_regex(r"\(\)", repos=indexed_repo, count=5)
+        assert response.status_code == 200
+
+        for result in response.json()["results"]:
+            for match in result["matches"]:
+                assert "()" in match["text"]
+
+    @pytest.mark.parametrize("pattern", [
+        r"\x70ublic",
+        r"\x{70}ublic",
+        r"\u0070ublic",
+        r"\0160ublic",
+        r"(?<p>p)\k<p>?ublic",
+        r"\p{Ll}ublic",
+    ])
+    def test_escape_arguments_are_not_literals(self, api_client, indexed_repo, pattern):
+        """Test that escapes with arguments find the files the plain literal finds."""
+        expected = api_client.search_regex("public", repos=indexed_repo, count=100).json()
+        if not expected["results"] or expected["limitHit"]:
+            pytest.skip("Need a complete, non-empty result set to compare")
+
+        response = api_client.search_regex(pattern, repos=indexed_repo, count=100)
+        assert response.status_code == 200
+
+        found = {(r["repository"], r["path"]) for r in response.json()["results"]}
+        for result in expected["results"]:
+            assert (result["repository"], result["path"]) in found
+
+    def test_case_insensitive(self, api_client, indexed_repo):
+        """Test that caseInsensitive finds at least what the exact case finds."""
+        exact = api_client.search_regex("Class", repos=indexed_repo, count=100).json()
+        folded = api_client.search_regex(
+            "cLaSs", repos=indexed_repo, count=100, case_insensitive=True
+        ).json()
+
+        # The index folds case, so both select the same candidate files
+        assert folded["candidateCount"] == exact["candidateCount"]
+        exact_paths = {(r["repository"], r["path"]) for r in exact["results"]}
+        folded_paths = {(r["repository"], r["path"]) for r in folded["results"]}
+        if not exact["limitHit"] and not folded["limitHit"]:
+            assert exact_paths <= folded_paths
+
+    def test_path_pattern(self, api_client, indexed_repo):
+        """Test that pathPattern restricts the files searched."""
+        response = api_client.search_regex(
+            "class", repos=indexed_repo, path_pattern="**/*.java", count=20
+        )
+        assert response.status_code == 200
+
+        for result in response.json()["results"]:
+            assert result["path"].endswith(".java")
+
+    def test_count_limit(self, api_client, indexed_repo):
+        """Test that count caps the number of files."""
+        response = api_client.search_regex("e", repos=indexed_repo, count=2)
+        assert response.status_code == 200
+
+        data = response.json()
+        assert len(data["results"]) <= 2
+
+    def test_deadline_returns_partial_results(self, api_client, indexed_repo):
+        """Test that an expired deadline stops verification and flags the response."""
+        response = api_client.search_regex("e", repos=indexed_repo, timeout_ms=1)
+        assert response.status_code == 200
+
+        data = response.json()
+        assert isinstance(data["results"], list)
+        if data.get("partial"):
+            assert data["partial"] is True
+        else:
+            assert "partial" not in data
+
+    def test_indexing_repository_does_not_hide_other_results(self, api_client):
+        """Test that a repository still being indexed does not suppress hits from ready ones."""
+        names = [r["name"] for r in api_client.repos().json()["repositories"] if r["hasCommits"]]
+        if len(names) < 2:
+            pytest.skip("Need at least two repositories")
+
+        # Make sure the first repository has a ready index and hits
+        ready = names[0]
+        for _ in range(10):
+            warm = api_client.search_regex("e", repos=ready, count=100).json()
+            if ready not in warm.get("indexing", []):
+                break
+        else:
+            pytest.skip("Index of the first repository never became ready")
+        if not warm["results"]:
+            pytest.skip("No hits in the first repository")
+
+        # A short budget leaves the indexes of the others building
+        response = api_client.search_regex("e", repos=names, count=100, timeout_ms=500)
+        assert response.status_code == 200
+
+        data = response.json()
+        if not data.get("indexing"):
+            pytest.skip("Every index was ready")
+        if data["limitHit"]:
+            pytest.skip("Limit hit before the ready repository was verified")
+        assert ready not in data["indexing"]
+        assert any(r["repository"] == ready for r in data["results"])